@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.benchmark;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.TokenRequestFactory;
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.config.TokenValidator;
+import net.nordeck.camunda.oauth2.time.SystemClock;
+import okhttp3.OkHttpClient;
+
+/**
+ * Creates the objects under benchmark, wired like the autoconfiguration does, but against a StubTokenEndpoint.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+
+    }
+
+    static OAuth2ConfigProperties properties() {
+        return new OAuth2ConfigProperties(
+                "http://localhost/auth/realms/benchmark",
+                "http://localhost/auth/realms/benchmark/protocol/openid-connect/token",
+                "benchmark",
+                "benchmark-secret",
+                "openid profile email");
+    }
+
+    static OkHttpClient httpClient(StubTokenEndpoint tokenEndpoint) {
+        return new OkHttpClient.Builder()
+                .addInterceptor(tokenEndpoint)
+                .build();
+    }
+
+    static OAuth2Client oAuth2Client(OkHttpClient httpClient) {
+        return new OAuth2Client(new TokenRequestFactory(properties()), httpClient, new TokenValidator(new SystemClock()));
+    }
+
+    /**
+     * Stops the non-daemon threads of the client, so the forked benchmark VM can exit.
+     */
+    static void shutdown(OkHttpClient httpClient) {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.benchmark;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token access under contention. With valid tokens this is the read path shared by all worker threads, with expired
+ * tokens every call goes through the single-flight refresh against the stand-in token endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OAuth2ClientBenchmark {
+
+    @Param({"valid", "expired"})
+    public String tokens;
+
+    private OkHttpClient httpClient;
+
+    private OAuth2Client oAuth2Client;
+
+    @Setup
+    public void setUp() {
+        Duration tokenLifetime = "valid".equals(tokens) ? Duration.ofHours(1) : Duration.ofHours(-1);
+        httpClient = Fixtures.httpClient(new StubTokenEndpoint(tokenLifetime));
+        oAuth2Client = Fixtures.oAuth2Client(httpClient);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.shutdown(httpClient);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public AccessToken getAccessToken1Thread() {
+        return oAuth2Client.getAccessToken();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public AccessToken getAccessToken4Threads() {
+        return oAuth2Client.getAccessToken();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public AccessToken getAccessToken16Threads() {
+        return oAuth2Client.getAccessToken();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public AccessToken getAccessToken64Threads() {
+        return oAuth2Client.getAccessToken();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.benchmark;
+
+import net.nordeck.camunda.oauth2.config.OAuth2RequestInterceptor;
+import okhttp3.OkHttpClient;
+import org.camunda.bpm.client.interceptor.ClientRequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead the library adds to every request of the Camunda external task client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OAuth2RequestInterceptorBenchmark {
+
+    private OkHttpClient httpClient;
+
+    private OAuth2RequestInterceptor interceptor;
+
+    @Setup
+    public void setUp() {
+        httpClient = Fixtures.httpClient(new StubTokenEndpoint(Duration.ofHours(1)));
+        interceptor = new OAuth2RequestInterceptor(Fixtures.oAuth2Client(httpClient));
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.shutdown(httpClient);
+    }
+
+    @Benchmark
+    public String intercept(HeaderCapturingContext context) {
+        interceptor.intercept(context);
+        return context.value;
+    }
+
+    /**
+     * Keeps the header value, like the Camunda client does, without the cost of its header map.
+     */
+    @State(Scope.Thread)
+    public static class HeaderCapturingContext implements ClientRequestContext {
+
+        private String value;
+
+        @Override
+        public void addHeader(String name, String value) {
+            this.value = value;
+        }
+    }
+}
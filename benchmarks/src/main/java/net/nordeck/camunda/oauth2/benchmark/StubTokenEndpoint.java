@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the token endpoint of an identity provider. As an OkHttp application interceptor it answers
+ * token requests without touching the network, so the benchmarks measure the library and not the loopback interface.
+ */
+public class StubTokenEndpoint implements Interceptor {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final String responseBody;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /**
+     * @param tokenLifetime the lifetime of the issued access tokens, negative to issue already expired tokens
+     */
+    public StubTokenEndpoint(Duration tokenLifetime) {
+        String accessToken = createJwt(Instant.now().plus(tokenLifetime));
+        String refreshToken = createJwt(Instant.now().plus(Duration.ofDays(1)));
+        this.responseBody = "{\"access_token\":\"" + accessToken + "\",\"refresh_token\":\"" + refreshToken
+                + "\",\"token_type\":\"Bearer\"}";
+    }
+
+    @Override
+    public Response intercept(Chain chain) {
+        requestCount.incrementAndGet();
+        return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(responseBody, JSON))
+                .build();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @param expiresAt the expiry of the token
+     * @return a signed JWT of typical size
+     */
+    public static String createJwt(Instant expiresAt) {
+        return JWT.create()
+                .withIssuer("http://localhost/auth/realms/benchmark")
+                .withSubject("service-account-benchmark")
+                .withAudience("camunda")
+                .withClaim("scope", "openid profile email")
+                .withClaim("azp", "benchmark")
+                .withClaim("preferred_username", "service-account-benchmark")
+                .withIssuedAt(new Date())
+                .withExpiresAt(Date.from(expiresAt))
+                .sign(Algorithm.HMAC256("benchmark"));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.benchmark;
+
+import net.nordeck.camunda.oauth2.TokenRequestFactory;
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import okhttp3.FormBody;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and writing token requests with the pre-encoded requests of TokenRequestFactory, compared to building a
+ * FormBody and parsing the token uri on every request. Each request is written to a reused buffer as OkHttp would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenRequestFactoryBenchmark {
+
+    private OAuth2ConfigProperties properties;
+
+    private TokenRequestFactory tokenRequestFactory;
+
+    private String refreshToken;
+
+    private final Buffer buffer = new Buffer();
+
+    @Setup
+    public void setUp() {
+        properties = Fixtures.properties();
+        tokenRequestFactory = new TokenRequestFactory(properties);
+        refreshToken = StubTokenEndpoint.createJwt(Instant.now().plus(Duration.ofDays(1)));
+    }
+
+    @Benchmark
+    public long createTokenRequest() throws IOException {
+        return write(tokenRequestFactory.createTokenRequest());
+    }
+
+    @Benchmark
+    public long createRefreshTokenRequest() throws IOException {
+        return write(tokenRequestFactory.createRefreshTokenRequest(refreshToken));
+    }
+
+    /**
+     * Baseline: a new FormBody and Request per token request.
+     */
+    @Benchmark
+    public long createTokenRequestPerCall() throws IOException {
+        RequestBody formBody = new FormBody.Builder()
+                .add("client_id", properties.getClientId())
+                .add("client_secret", properties.getClientSecret())
+                .add("grant_type", "client_credentials")
+                .add("scope", properties.getScope())
+                .build();
+
+        return write(new Request.Builder()
+                .url(properties.getTokenUri())
+                .post(formBody)
+                .build());
+    }
+
+    /**
+     * Baseline: a new FormBody and Request per refresh token request.
+     */
+    @Benchmark
+    public long createRefreshTokenRequestPerCall() throws IOException {
+        RequestBody formBody = new FormBody.Builder()
+                .add("client_id", properties.getClientId())
+                .add("client_secret", properties.getClientSecret())
+                .add("refresh_token", refreshToken)
+                .add("grant_type", "refresh_token")
+                .build();
+
+        return write(new Request.Builder()
+                .url(properties.getTokenUri())
+                .post(formBody)
+                .build());
+    }
+
+    private long write(Request request) throws IOException {
+        buffer.clear();
+        request.body().writeTo(buffer);
+        return buffer.size() + request.url().port();
+    }
+}
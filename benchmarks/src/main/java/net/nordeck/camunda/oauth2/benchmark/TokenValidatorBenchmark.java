@@ -0,0 +1,73 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.benchmark;
+
+import com.auth0.jwt.JWT;
+import net.nordeck.camunda.oauth2.config.TokenValidator;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.time.SystemClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The expiry check done on every intercepted request, compared to decoding the JWT on every check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenValidatorBenchmark {
+
+    private TokenValidator tokenValidator;
+
+    private AccessToken accessToken;
+
+    @Setup
+    public void setUp() {
+        tokenValidator = new TokenValidator(new SystemClock());
+        String token = StubTokenEndpoint.createJwt(Instant.now().plus(Duration.ofHours(1)));
+        accessToken = new AccessToken(token, JWT.decode(token).getExpiresAt().getTime());
+    }
+
+    @Benchmark
+    public boolean isExpired() {
+        return tokenValidator.isExpired(accessToken);
+    }
+
+    /**
+     * Baseline: decoding the JWT on every check.
+     */
+    @Benchmark
+    public boolean isExpiredDecodingJwt() {
+        return JWT.decode(accessToken.token()).getExpiresAt().before(new Date());
+    }
+}
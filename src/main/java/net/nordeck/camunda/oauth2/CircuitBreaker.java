@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.time.Clock;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fails token requests fast while the token endpoint is unavailable. After the configured number of consecutive
+ * transient failures the circuit opens and no requests are let through. Once the open duration passed, a single probe
+ * request is let through, which closes the circuit again if it succeeds or opens it for another duration if it fails.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of the circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private record Status(State state, int failures, long openedAt) {
+    }
+
+    private static final Status CLOSED = new Status(State.CLOSED, 0, 0);
+
+    private final OAuth2ConfigProperties.CircuitBreaker circuitBreakerProperties;
+
+    private final Clock clock;
+
+    private final AtomicReference<Status> status = new AtomicReference<>(CLOSED);
+
+    /**
+     * @param circuitBreakerProperties the configuration when to open the circuit and for how long
+     * @param clock the clock to measure how long the circuit is open with
+     */
+    public CircuitBreaker(OAuth2ConfigProperties.CircuitBreaker circuitBreakerProperties, Clock clock) {
+        this.circuitBreakerProperties = circuitBreakerProperties;
+        this.clock = clock;
+    }
+
+    /**
+     * @return a circuit breaker which always lets requests through
+     */
+    public static CircuitBreaker disabled() {
+        return new CircuitBreaker(new OAuth2ConfigProperties.CircuitBreaker(false, 0, null), null);
+    }
+
+    /**
+     * @return true if a request may be sent to the token endpoint, false if it shall fail fast
+     */
+    public boolean tryAcquire() {
+        if (!circuitBreakerProperties.isEnabled()) {
+            return true;
+        }
+        while (true) {
+            Status current = status.get();
+            switch (current.state()) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    // the probe is still in flight
+                    return false;
+                default:
+                    if (clock.millis() - current.openedAt() < circuitBreakerProperties.getOpenDuration().toMillis()) {
+                        return false;
+                    }
+                    if (status.compareAndSet(current, new Status(State.HALF_OPEN, current.failures(), current.openedAt()))) {
+                        return true;
+                    }
+            }
+        }
+    }
+
+    /**
+     * Records that the token endpoint answered, even if it rejected the request with a status RetryPolicy.isTransient
+     * does not classify as transient, which closes the circuit.
+     */
+    public void recordSuccess() {
+        if (circuitBreakerProperties.isEnabled() && status.get() != CLOSED) {
+            status.set(CLOSED);
+        }
+    }
+
+    /**
+     * Records that the token endpoint did not answer, or answered with a transient error status, which opens the
+     * circuit once the threshold is reached or when the probe failed.
+     */
+    public void recordFailure() {
+        if (!circuitBreakerProperties.isEnabled()) {
+            return;
+        }
+        status.updateAndGet(current -> {
+            int failures = current.failures() + 1;
+            return switch (current.state()) {
+                case CLOSED -> failures >= circuitBreakerProperties.getFailureThreshold()
+                        ? new Status(State.OPEN, failures, clock.millis())
+                        : new Status(State.CLOSED, failures, 0);
+                case HALF_OPEN -> new Status(State.OPEN, failures, clock.millis());
+                case OPEN -> current;
+            };
+        });
+    }
+
+    /**
+     * @return the current state of the circuit
+     */
+    public State getState() {
+        return status.get().state();
+    }
+}
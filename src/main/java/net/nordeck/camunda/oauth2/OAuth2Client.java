@@ -16,30 +16,59 @@
  */
 package net.nordeck.camunda.oauth2;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.config.StartupMode;
 import net.nordeck.camunda.oauth2.config.TokenValidator;
 import net.nordeck.camunda.oauth2.dto.AccessToken;
 import net.nordeck.camunda.oauth2.dto.RefreshToken;
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+import net.nordeck.camunda.oauth2.dto.TokenResponse;
+import net.nordeck.camunda.oauth2.dto.TokenState;
 import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import net.nordeck.camunda.oauth2.exception.TokenEndpointUnavailableException;
 import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import net.nordeck.camunda.oauth2.metrics.OAuth2ClientMetrics;
+import net.nordeck.camunda.oauth2.store.InMemoryTokenStore;
+import net.nordeck.camunda.oauth2.store.TokenStore;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.oauth2.time.SystemClock;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.apache.commons.lang3.ObjectUtils.isNotEmpty;
 
 /**
- * Handles token fetching and refreshing.
+ * Handles token fetching and refreshing. The tokens are published as one immutable snapshot, so reading a valid token
+ * never blocks. Only one refresh is in flight at a time, concurrent callers wait for its result. Tokens are fetched
+ * asynchronously, the blocking methods just wait for the asynchronous ones. Tokens are fetched through a TokenStore,
+ * which may provide tokens another process already fetched.
  */
 public class OAuth2Client {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(OAuth2Client.class);
     private static final String ERROR_MESSAGE = "Unable to fetch tokens with response code ";
+    private static final long DEFAULT_MAX_RESPONSE_SIZE = 64 * 1024;
+
+    private static final String GRANT_TYPE_CLIENT_CREDENTIALS = "client_credentials";
+
+    private static final String GRANT_TYPE_REFRESH_TOKEN = "refresh_token";
 
     private final TokenRequestFactory tokenRequestFactory;
 
@@ -47,59 +76,399 @@ public class OAuth2Client {
 
     private final TokenValidator tokenValidator;
 
-    private AccessToken accessToken;
+    private final TokenResponseParser tokenResponseParser;
+
+    private final Clock clock;
+
+    private final long clockSkewMillis;
+
+    private final OAuth2ClientMetrics metrics;
+
+    private final RetryPolicy retryPolicy;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final OAuth2ConfigProperties.Grace grace;
+
+    private final TokenStore tokenStore;
+
+    private volatile Failure lastFailure;
+
+    private volatile String rejectedAccessToken;
+
+    private final AtomicReference<CompletableFuture<TokenPair>> refreshInFlight = new AtomicReference<>();
+
+    private volatile TokenPair tokens;
 
-    private RefreshToken refreshToken;
+    private volatile Obtained obtained;
 
     /**
      * @param tokenRequestFactory the factory which creates the requests our client is using to get its tokens
      * @param httpClient an instance of okhttp3.OkHttpClient
      * @param tokenValidator the validator, to check if our token is expired
      */
+    // neither retries nor uses a circuit breaker, like it always did; use the builder to enable them
     public OAuth2Client(TokenRequestFactory tokenRequestFactory, OkHttpClient httpClient, TokenValidator tokenValidator) {
-        this.tokenRequestFactory = tokenRequestFactory;
-        this.httpClient = httpClient;
-        this.tokenValidator = tokenValidator;
+        this(builder(tokenRequestFactory, httpClient).tokenValidator(tokenValidator));
+    }
+
+    private OAuth2Client(Builder builder) {
+        this.tokenRequestFactory = builder.tokenRequestFactory;
+        this.httpClient = builder.httpClient;
+        this.clock = builder.clock;
+        this.clockSkewMillis = builder.clockSkew.toMillis();
+        this.tokenValidator = builder.tokenValidator != null ? builder.tokenValidator : new TokenValidator(clock);
+        this.tokenResponseParser = builder.tokenResponseParser;
+        this.metrics = builder.metrics;
+        this.retryPolicy = builder.retryPolicy;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.grace = builder.grace;
+        this.tokenStore = builder.tokenStore;
 
-        fetchTokens(tokenRequestFactory.createTokenRequest());
+        switch (builder.startupMode) {
+            case EAGER -> {
+                long startedAt = System.nanoTime();
+                tokens = join(tokenStore.getOrFetch(this::isValid, this::fetchTokens));
+                obtained = new Obtained(clock.millis(), System.nanoTime() - startedAt);
+            }
+            case BACKGROUND -> refreshAsync(null).exceptionally(e -> {
+                LOGGER.warn("Unable to fetch tokens in the background, fetching them on first use.", e);
+                return null;
+            });
+            case LAZY -> LOGGER.debug("Fetching tokens on first use.");
+        }
     }
 
     /**
      * This method returns the access token. If the existing token is expired, the refresh token is used to refresh get a new one.
+     * In grace mode the existing token is returned while it is refreshed, as long as it has not expired.
      * @return the actual access token
      */
     public AccessToken getAccessToken() {
-        if (tokenValidator.isExpired(accessToken)) {
-            if (refreshToken.token() == null) {
-                fetchTokens(tokenRequestFactory.createTokenRequest());
+        TokenPair current = tokens;
+        if (isValid(current)) {
+            metrics.recordTokenLookup(true);
+            return current.accessToken();
+        }
+        metrics.recordTokenLookup(false);
+        return join(refreshOrServeStale(current));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getAccessToken()}, which does not block while the tokens are refreshed.
+     * @return a future of the actual access token
+     */
+    public CompletableFuture<AccessToken> getAccessTokenAsync() {
+        TokenPair current = tokens;
+        if (isValid(current)) {
+            metrics.recordTokenLookup(true);
+            return CompletableFuture.completedFuture(current.accessToken());
+        }
+        metrics.recordTokenLookup(false);
+        return refreshOrServeStale(current);
+    }
+
+    /**
+     * Reads the state of the cached tokens without fetching any, e.g. to report it in health checks.
+     * @return a snapshot of the cached access token, when it was obtained and how long obtaining it took, whether
+     * obtaining the tokens failed last time and the state of the circuit breaker
+     */
+    public TokenState getTokenState() {
+        TokenPair current = tokens;
+        Obtained currentObtained = obtained;
+        Failure failure = lastFailure;
+        Throwable lastFailureCause = failure == null ? null : failure.exception();
+        if (current == null || currentObtained == null) {
+            return new TokenState(null, false, 0, null, lastFailureCause, circuitBreaker.getState());
+        }
+        return new TokenState(current.accessToken(), !tokenValidator.isExpired(current.accessToken()),
+                currentObtained.at(), Duration.ofNanos(currentObtained.latencyNanos()), lastFailureCause,
+                circuitBreaker.getState());
+    }
+
+    /**
+     * @return the metrics the client records to
+     */
+    public OAuth2ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Refreshes the tokens. In grace mode, the current access token is served while it is refreshed in the background
+     * as long as it has not expired, and a failed refresh is not attempted again for the failure cache duration.
+     * @param current the current tokens, null if none were fetched yet
+     * @return a future of the access token to use
+     */
+    private CompletableFuture<AccessToken> refreshOrServeStale(TokenPair current) {
+        if (!grace.isEnabled()) {
+            return refreshAsync(accessToken(current));
+        }
+        boolean usable = current != null && !tokenValidator.isExpired(current.accessToken());
+        Failure failure = lastFailure;
+        if (failure != null && clock.millis() - failure.failedAt() < grace.getFailureCacheDuration().toMillis()) {
+            return usable
+                    ? CompletableFuture.completedFuture(current.accessToken())
+                    : CompletableFuture.failedFuture(failure.exception());
+        }
+        CompletableFuture<AccessToken> refresh = refreshAsync(accessToken(current));
+        return usable ? CompletableFuture.completedFuture(current.accessToken()) : refresh;
+    }
+
+    /**
+     * Refreshes the tokens, unless the given access token was already replaced by another refresh in the meantime.
+     * @param staleToken the access token which shall be replaced
+     * @return the refreshed access token, or the current one if it was already refreshed
+     */
+    public AccessToken refresh(AccessToken staleToken) {
+        return join(refreshAsync(staleToken));
+    }
+
+    /**
+     * Asynchronous variant of {@link #refresh(AccessToken)}. Callers arriving while a refresh is in flight share its
+     * result instead of starting another one.
+     * @param staleToken the access token which shall be replaced, null to fetch the first tokens if there are none yet
+     * @return a future of the refreshed access token, or of the current one if it was already refreshed
+     */
+    public CompletableFuture<AccessToken> refreshAsync(AccessToken staleToken) {
+        return refreshAsync(staleToken, false);
+    }
+
+    /**
+     * Replaces an access token the resource server rejected before it expired, e.g. because it was revoked or its
+     * signing key was rotated. New tokens are requested instead of refreshing the rejected ones, and the rejected
+     * token is not served again even if that fails. Invalidating a token which was already replaced just returns the
+     * current one, so a burst of rejections causes a single token request.
+     * @param rejectedToken the access token the resource server rejected
+     * @return the access token to retry the rejected request with
+     */
+    public AccessToken invalidate(AccessToken rejectedToken) {
+        return join(invalidateAsync(rejectedToken));
+    }
+
+    /**
+     * Asynchronous variant of {@link #invalidate(AccessToken)}.
+     * @param rejectedToken the access token the resource server rejected
+     * @return a future of the access token to retry the rejected request with
+     */
+    public CompletableFuture<AccessToken> invalidateAsync(AccessToken rejectedToken) {
+        return refreshAsync(rejectedToken, true);
+    }
+
+    /**
+     * @param staleToken the access token which shall be replaced
+     * @param rejected whether the token was rejected, so new tokens are requested and it is dropped if that fails
+     * @return a future of the refreshed access token, or of the current one if it was already refreshed
+     */
+    private CompletableFuture<AccessToken> refreshAsync(AccessToken staleToken, boolean rejected) {
+        CompletableFuture<TokenPair> refresh = new CompletableFuture<>();
+        CompletableFuture<TokenPair> inFlight = refreshInFlight.compareAndExchange(null, refresh);
+        if (inFlight != null) {
+            return inFlight.thenApply(TokenPair::accessToken);
+        }
+
+        // another refresh may have completed before we started ours, callers which joined ours get its tokens, unless it
+        // failed to replace a rejected token, which callers holding that token wait for the replacement of instead
+        TokenPair current = tokens;
+        if (accessToken(current) != staleToken && !isRejected(current)) {
+            refresh.complete(current);
+            refreshInFlight.set(null);
+            return refresh.thenApply(TokenPair::accessToken);
+        }
+
+        if (rejected && staleToken != null) {
+            rejectedAccessToken = staleToken.token();
+        }
+        // stored tokens are only used if another process already replaced the current ones
+        long startedAt = System.nanoTime();
+        CompletableFuture<TokenPair> fetch;
+        try {
+            fetch = tokenStore.getOrFetch(
+                    stored -> isValid(stored) && !isRejected(stored)
+                            && (current == null || !stored.accessToken().token().equals(current.accessToken().token())),
+                    stored -> fetchTokens(isRejected(stored) ? null : stored));
+        } catch (RuntimeException e) {
+            fetch = CompletableFuture.failedFuture(e);
+        }
+        fetch.whenComplete((refreshed, e) -> {
+            // publish the tokens before anyone waiting for the refresh gets them
+            if (refreshed != null) {
+                tokens = refreshed;
+                obtained = new Obtained(clock.millis(), System.nanoTime() - startedAt);
+                lastFailure = null;
+            } else {
+                if (rejected && current != null) {
+                    // keep the rejected token from being served, even in grace mode
+                    tokens = new TokenPair(new AccessToken(current.accessToken().token(), 0), current.refreshToken());
+                }
+                if (grace.isEnabled()) {
+                    LOGGER.warn("Unable to refresh tokens, not trying again for {}.", grace.getFailureCacheDuration(), e);
+                }
+                lastFailure = new Failure(e, clock.millis());
+            }
+            refreshInFlight.set(null);
+            if (e != null) {
+                refresh.completeExceptionally(e);
             } else {
-                fetchTokens(tokenRequestFactory.createRefreshTokenRequest(refreshToken.token()));
+                refresh.complete(refreshed);
             }
+        });
+        return refresh.thenApply(TokenPair::accessToken);
+    }
+
+    /**
+     * @param current the current tokens, null if none were fetched yet
+     * @return true if there are tokens and the access token is not expired, or in grace mode does not expire within
+     * the refresh ahead duration
+     */
+    private boolean isValid(TokenPair current) {
+        if (current == null) {
+            return false;
         }
-        return accessToken;
+        return grace.isEnabled()
+                ? !tokenValidator.isExpired(current.accessToken(), grace.getRefreshAhead())
+                : !tokenValidator.isExpired(current.accessToken());
+    }
+
+    /**
+     * @param stored the stored tokens, null if there are none
+     * @return true if the resource server rejected the access token, so neither it nor its refresh token are used
+     */
+    private boolean isRejected(TokenPair stored) {
+        return stored != null && stored.accessToken().token().equals(rejectedAccessToken);
+    }
+
+    /**
+     * @param current the current tokens, null if none were fetched yet
+     * @return the current access token, null if none was fetched yet
+     */
+    private static AccessToken accessToken(TokenPair current) {
+        return current == null ? null : current.accessToken();
+    }
+
+    /**
+     * @param refreshToken the refresh token of the current tokens
+     * @return true if a refresh token is present and not expired, false if new tokens have to be requested instead
+     */
+    private boolean isRefreshable(RefreshToken refreshToken) {
+        return refreshToken.token() != null && !tokenValidator.isRefreshTokenExpired(refreshToken);
+    }
+
+    /**
+     * Refreshes the given tokens if their refresh token can be used, requests new tokens otherwise.
+     * @param stored the tokens to refresh, null if there are none
+     * @return a future of the fetched tokens
+     */
+    private CompletableFuture<TokenPair> fetchTokens(TokenPair stored) {
+        return stored != null && isRefreshable(stored.refreshToken())
+                ? fetchTokens(tokenRequestFactory.createRefreshTokenRequest(stored.refreshToken().token()), GRANT_TYPE_REFRESH_TOKEN)
+                : fetchTokens(tokenRequestFactory.createTokenRequest(), GRANT_TYPE_CLIENT_CREDENTIALS);
     }
 
     /**
-     * Fetches access and refresh token according to provided configuration.
+     * Fetches access and refresh token according to provided configuration without blocking the calling thread.
      * @param request An instance of okhttp3.Request
-     * @throws TokenResponseInvalidException when the token request was not successful.
-     * @throws IOException if things are completely messed up.
+     * @param grantType the grant type of the request, to record metrics with
+     * @return a future of the fetched tokens, completed exceptionally with a TokenResponseInvalidException when the
+     * token request was not successful, a TokenEndpointUnavailableException while the circuit breaker is open or an
+     * OAuth2RuntimeException if things are completely messed up.
+     */
+    private CompletableFuture<TokenPair> fetchTokens(Request request, String grantType) {
+        LOGGER.debug("Trying to fetch tokens with the {} grant from {}", grantType, request.url());
+
+        CompletableFuture<TokenPair> future = new CompletableFuture<>();
+        fetchTokens(request, grantType, 1, future);
+        return future;
+    }
+
+    /**
+     * Sends one attempt of a token request and schedules the next attempt if it failed transiently.
+     * @param request An instance of okhttp3.Request
+     * @param grantType the grant type of the request, to record metrics with
+     * @param attempt the number of this attempt, starting with 1
+     * @param future the future to complete with the result of the last attempt
      */
-    private void fetchTokens(Request request) {
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Trying to fetch tokens using " + request);
+    private void fetchTokens(Request request, String grantType, int attempt, CompletableFuture<TokenPair> future) {
+        if (!circuitBreaker.tryAcquire()) {
+            future.completeExceptionally(new TokenEndpointUnavailableException(
+                    "The token endpoint is unavailable, not fetching tokens until the circuit breaker closes."));
+            return;
         }
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (isSuccessful(response)) {
-                String responseBody = Objects.requireNonNull(response.body()).string();
-                accessToken = new AccessToken(extractFromResponse("access_token", responseBody));
-                refreshToken = new RefreshToken(extractFromResponse("refresh_token", responseBody));
-                LOGGER.info("fetched tokens successfully.");
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug(accessToken.toString());
-                    LOGGER.debug(refreshToken.toString());
+        long startedAt = System.nanoTime();
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                metrics.recordTokenRequest(grantType, OAuth2ClientMetrics.OUTCOME_IO_ERROR, System.nanoTime() - startedAt);
+                // the token endpoint did not answer, e.g. it accepted the connection and hung
+                circuitBreaker.recordFailure();
+                OAuth2RuntimeException exception = new OAuth2RuntimeException(e);
+                if (RetryPolicy.isRetryable(e, GRANT_TYPE_CLIENT_CREDENTIALS.equals(grantType))) {
+                    retryOrFail(request, grantType, attempt, null, exception, future);
+                } else {
+                    future.completeExceptionally(exception);
                 }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                int responseCode = response.code();
+                String retryAfter = response.header("Retry-After");
+                try {
+                    TokenPair tokenPair = toTokenPair(response);
+                    metrics.recordTokenRequest(grantType, OAuth2ClientMetrics.OUTCOME_SUCCESS, System.nanoTime() - startedAt);
+                    metrics.recordTokenFetched(tokenPair.accessToken());
+                    circuitBreaker.recordSuccess();
+                    future.complete(tokenPair);
+                } catch (RuntimeException e) {
+                    metrics.recordTokenRequest(grantType, OAuth2ClientMetrics.OUTCOME_ERROR, System.nanoTime() - startedAt);
+                    if (RetryPolicy.isTransient(responseCode)) {
+                        circuitBreaker.recordFailure();
+                        retryOrFail(request, grantType, attempt, retryAfter, e, future);
+                    } else {
+                        circuitBreaker.recordSuccess();
+                        future.completeExceptionally(e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules the next attempt of a transiently failed token request, unless the retry policy gives up.
+     * @param request An instance of okhttp3.Request
+     * @param grantType the grant type of the request, to record metrics with
+     * @param attempt the number of the failed attempt
+     * @param retryAfter the Retry-After header of the failed response, null if there is none
+     * @param failure the exception the attempt failed with
+     * @param future the future to complete with the result of the last attempt
+     */
+    private void retryOrFail(Request request, String grantType, int attempt, String retryAfter, RuntimeException failure,
+                             CompletableFuture<TokenPair> future) {
+        long delay = retryPolicy.delayMillis(attempt, retryAfter, clock.millis());
+        if (delay < 0) {
+            future.completeExceptionally(failure);
+            return;
+        }
+        LOGGER.warn("Attempt {} to fetch tokens failed, retrying in {}ms: {}", attempt, delay, failure.getMessage());
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                .execute(() -> fetchTokens(request, grantType, attempt + 1, future));
+    }
+
+    /**
+     * Extracts access and refresh token from the token response.
+     * @param response the response of the token request
+     * @return the fetched tokens
+     * @throws TokenResponseInvalidException when the token request was not successful.
+     * @throws OAuth2RuntimeException if things are completely messed up.
+     */
+    private TokenPair toTokenPair(Response response) {
+        try (response) {
+            if (isSuccessful(response)) {
+                TokenResponse tokenResponse = tokenResponseParser.parse(Objects.requireNonNull(response.body()));
+                AccessToken accessToken = toAccessToken(tokenResponse);
+                RefreshToken refreshToken = toRefreshToken(tokenResponse);
+                LOGGER.debug("Fetched tokens {} and {}", accessToken, refreshToken);
+                return new TokenPair(accessToken, refreshToken);
             } else {
                 throw new TokenResponseInvalidException(ERROR_MESSAGE, String.valueOf(response.code()), response.message());
             }
@@ -108,6 +477,22 @@ public class OAuth2Client {
         }
     }
 
+    /**
+     * Waits for the given future and rethrows the exception it completed with, if any.
+     * @param future the future to wait for
+     * @return the result of the future
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new OAuth2RuntimeException(e.getCause());
+        }
+    }
+
     /**
      * Validate that the response is successful. Means that the status code is 200 and the response body is not empty.
      * @param response The response to be validated
@@ -121,14 +506,245 @@ public class OAuth2Client {
     }
 
     /**
-     * Helper method to get a value from JSON response body.
-     * @param key the JSON key to gather the values for
-     * @param responseBody the response bdy to parse
-     * @return the key's value
+     * Determines the expiry of the access token once, so validating it later is a simple comparison. The expiry is taken
+     * from expires_in, or decoded from the token if it is a JWT and expires_in is missing.
+     * @param tokenResponse the parsed token response
+     * @return the access token with its expiry
+     * @throws TokenResponseInvalidException if there is no access token or its expiry is unknown
+     */
+    private AccessToken toAccessToken(TokenResponse tokenResponse) {
+        String token = tokenResponse.accessToken();
+        if (token == null) {
+            throw new TokenResponseInvalidException("The token response does not contain an access token.");
+        }
+        if (tokenResponse.expiresIn() != null) {
+            return new AccessToken(token, expiresAt(tokenResponse.expiresIn()));
+        }
+        Long expiresAt = decodeExpiry(token);
+        if (expiresAt == null) {
+            throw new TokenResponseInvalidException("The token response contains neither expires_in nor a JWT access token with an expiry.");
+        }
+        return new AccessToken(token, expiresAt);
+    }
+
+    /**
+     * Determines the expiry of the refresh token from refresh_expires_in, or decodes it from the token if it is a JWT.
+     * A refresh_expires_in of 0 is used for refresh tokens which do not expire, e.g. offline tokens.
+     * @param tokenResponse the parsed token response
+     * @return the refresh token with its expiry, Long.MAX_VALUE if unknown
+     */
+    private RefreshToken toRefreshToken(TokenResponse tokenResponse) {
+        String token = tokenResponse.refreshToken();
+        Long expiresIn = tokenResponse.refreshExpiresIn();
+        if (token == null || (expiresIn != null && expiresIn == 0)) {
+            return new RefreshToken(token, Long.MAX_VALUE);
+        }
+        if (expiresIn != null) {
+            return new RefreshToken(token, expiresAt(expiresIn));
+        }
+        Long expiresAt = decodeExpiry(token);
+        return new RefreshToken(token, expiresAt == null ? Long.MAX_VALUE : expiresAt);
+    }
+
+    /**
+     * @param expiresIn the lifetime of a token in seconds, counted from now on
+     * @return the expiry of the token in milliseconds since epoch
+     */
+    private long expiresAt(long expiresIn) {
+        return clock.millis() + expiresIn * 1000;
+    }
+
+    /**
+     * Decodes the expiry of a JWT and converts it from the clock of the identity provider to ours. This is the only
+     * place the clock skew is applied, expires_in is already counted on our clock. The difference of the clocks is
+     * measured from the iat claim and compensated up to the clock skew. Without iat, the token is considered expired
+     * the clock skew before its exp, in case the clock of the identity provider is ahead of ours.
+     * @param token a token, which might be a JWT
+     * @return the expiry of the token in milliseconds since epoch if it is a JWT with an expiry, null otherwise
+     */
+    private Long decodeExpiry(String token) {
+        DecodedJWT jwt;
+        try {
+            jwt = JWT.decode(token);
+        } catch (JWTDecodeException e) {
+            return null;
+        }
+        Date expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return null;
+        }
+        Date issuedAt = jwt.getIssuedAt();
+        if (issuedAt == null) {
+            return expiresAt.getTime() - clockSkewMillis;
+        }
+        long skew = clock.millis() - issuedAt.getTime();
+        if (clockSkewMillis > 0 && Math.abs(skew) > clockSkewMillis) {
+            LOGGER.warn("The clock of the identity provider differs from ours by about {} ms, more than the tolerated {} ms.",
+                    skew, clockSkewMillis);
+        }
+        return expiresAt.getTime() + Math.max(-clockSkewMillis, Math.min(clockSkewMillis, skew));
+    }
+
+    /**
+     * @param tokenRequestFactory the factory which creates the requests our client is using to get its tokens
+     * @param httpClient an instance of okhttp3.OkHttpClient
+     * @return a builder of an OAuth2Client, which fetches its tokens eagerly, keeps them in memory and neither retries
+     * failed token requests nor uses a circuit breaker unless configured otherwise
+     */
+    public static Builder builder(TokenRequestFactory tokenRequestFactory, OkHttpClient httpClient) {
+        return new Builder(tokenRequestFactory, httpClient);
+    }
+
+    /**
+     * Builds an OAuth2Client. Everything but the token request factory and the http client is optional.
+     */
+    public static final class Builder {
+
+        private final TokenRequestFactory tokenRequestFactory;
+
+        private final OkHttpClient httpClient;
+
+        private TokenValidator tokenValidator;
+
+        private TokenResponseParser tokenResponseParser = new TokenResponseParser(DEFAULT_MAX_RESPONSE_SIZE);
+
+        private Clock clock = new SystemClock();
+
+        private Duration clockSkew = Duration.ZERO;
+
+        private OAuth2ClientMetrics metrics = OAuth2ClientMetrics.NOOP;
+
+        private RetryPolicy retryPolicy = RetryPolicy.NO_RETRY;
+
+        private CircuitBreaker circuitBreaker = CircuitBreaker.disabled();
+
+        private OAuth2ConfigProperties.Grace grace = new OAuth2ConfigProperties.Grace(false, Duration.ZERO, Duration.ZERO);
+
+        private StartupMode startupMode = StartupMode.EAGER;
+
+        private TokenStore tokenStore = new InMemoryTokenStore();
+
+        private Builder(TokenRequestFactory tokenRequestFactory, OkHttpClient httpClient) {
+            this.tokenRequestFactory = Objects.requireNonNull(tokenRequestFactory, "tokenRequestFactory");
+            this.httpClient = Objects.requireNonNull(httpClient, "httpClient");
+        }
+
+        /**
+         * @param tokenValidator the validator, to check if our token is expired, by default one without clock skew
+         * using the clock of the client
+         * @return this builder
+         */
+        public Builder tokenValidator(TokenValidator tokenValidator) {
+            this.tokenValidator = tokenValidator;
+            return this;
+        }
+
+        /**
+         * @param tokenResponseParser the parser of the token responses, by default one accepting up to 64KB
+         * @return this builder
+         */
+        public Builder tokenResponseParser(TokenResponseParser tokenResponseParser) {
+            this.tokenResponseParser = Objects.requireNonNull(tokenResponseParser, "tokenResponseParser");
+            return this;
+        }
+
+        /**
+         * @param clock the clock to turn the lifetimes of the token response into expiry dates with
+         * @return this builder
+         */
+        public Builder clock(Clock clock) {
+            this.clock = Objects.requireNonNull(clock, "clock");
+            return this;
+        }
+
+        /**
+         * @param clockSkew the tolerated difference between the clocks of the identity provider and this host, by
+         *                  default none
+         * @return this builder
+         */
+        public Builder clockSkew(Duration clockSkew) {
+            this.clockSkew = Objects.requireNonNull(clockSkew, "clockSkew");
+            return this;
+        }
+
+        /**
+         * @param metrics the metrics to record token lookups and requests to
+         * @return this builder
+         */
+        public Builder metrics(OAuth2ClientMetrics metrics) {
+            this.metrics = Objects.requireNonNull(metrics, "metrics");
+            return this;
+        }
+
+        /**
+         * @param retryPolicy the policy whether and when to retry failed token requests, by default RetryPolicy.NO_RETRY,
+         *                    new RetryPolicy(OAuth2ConfigProperties.Retry.defaults()) for the defaults of oauth2.retry.*
+         * @return this builder
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy");
+            return this;
+        }
+
+        /**
+         * @param circuitBreaker the circuit breaker to fail token requests fast while the token endpoint is unavailable,
+         *                       by default CircuitBreaker.disabled()
+         * @return this builder
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = Objects.requireNonNull(circuitBreaker, "circuitBreaker");
+            return this;
+        }
+
+        /**
+         * @param grace whether to keep serving the access token while it cannot be refreshed
+         * @return this builder
+         */
+        public Builder grace(OAuth2ConfigProperties.Grace grace) {
+            this.grace = Objects.requireNonNull(grace, "grace");
+            return this;
+        }
+
+        /**
+         * @param startupMode when to fetch the first tokens
+         * @return this builder
+         */
+        public Builder startupMode(StartupMode startupMode) {
+            this.startupMode = Objects.requireNonNull(startupMode, "startupMode");
+            return this;
+        }
+
+        /**
+         * @param tokenStore the store to fetch the tokens through
+         * @return this builder
+         */
+        public Builder tokenStore(TokenStore tokenStore) {
+            this.tokenStore = Objects.requireNonNull(tokenStore, "tokenStore");
+            return this;
+        }
+
+        /**
+         * @return a new OAuth2Client, which already fetched its first tokens when starting eagerly
+         */
+        public OAuth2Client build() {
+            return new OAuth2Client(this);
+        }
+    }
+
+    /**
+     * When the current tokens were obtained, from the token endpoint or the token store.
+     * @param at the time the tokens were obtained at in milliseconds since epoch
+     * @param latencyNanos how long obtaining the tokens took in nanoseconds
+     */
+    private record Obtained(long at, long latencyNanos) {
+    }
+
+    /**
+     * A failed refresh, remembered in grace mode to not attempt it again for the failure cache duration.
+     * @param exception the exception the refresh failed with
+     * @param failedAt the time the refresh failed at in milliseconds since epoch
      */
-    private String extractFromResponse(String key, String responseBody) {
-        JSONObject json = new JSONObject(responseBody);
-        return json.has(key) ? (String) json.get(key) : null;
+    private record Failure(Throwable exception, long failedAt) {
     }
 
 }
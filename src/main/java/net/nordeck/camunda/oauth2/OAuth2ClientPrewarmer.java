@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches the tokens of all clients before the application reports to be ready, so the first fetchAndLock does not
+ * wait for the token endpoint. Clients which already hold valid tokens, e.g. fetched eagerly, cause no token request.
+ * The application starts even if the tokens cannot be fetched in time, the health indicator reports it instead.
+ */
+public class OAuth2ClientPrewarmer implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OAuth2ClientPrewarmer.class);
+
+    private final Collection<OAuth2Client> oAuth2Clients;
+
+    private final Duration timeout;
+
+    /**
+     * @param oAuth2Clients the clients whose tokens shall be fetched, all at once
+     * @param timeout how long to wait for the tokens
+     */
+    public OAuth2ClientPrewarmer(Collection<OAuth2Client> oAuth2Clients, Duration timeout) {
+        this.oAuth2Clients = oAuth2Clients;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        CompletableFuture<?>[] prewarms = oAuth2Clients.stream()
+                .map(OAuth2Client::getAccessTokenAsync)
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(prewarms).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            LOGGER.debug("Prewarmed the tokens of {} clients.", prewarms.length);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Unable to prewarm the tokens within {}, fetching them on first use.", timeout);
+        } catch (ExecutionException e) {
+            LOGGER.warn("Unable to prewarm the tokens, fetching them on first use.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
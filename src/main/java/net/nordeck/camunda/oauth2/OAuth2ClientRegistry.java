@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2RequestInterceptor;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the default OAuth2Client configured by oauth2.* and one further OAuth2Client per oauth2.registrations.&lt;name&gt;,
+ * each with its own cached tokens. The external task client does not pass the url of a request to its interceptors,
+ * so the interceptor of a registration is picked by base url when the external task client is built:
+ * <pre>
+ * ExternalTaskClient.create()
+ *         .baseUrl(baseUrl)
+ *         .addInterceptor(oAuth2ClientRegistry.interceptorFor(baseUrl))
+ *         .build();
+ * </pre>
+ */
+public class OAuth2ClientRegistry {
+
+    /**
+     * The name of the client configured by oauth2.*, e.g. in its metrics.
+     */
+    public static final String DEFAULT_CLIENT_NAME = "default";
+
+    private final OAuth2Client defaultClient;
+
+    private final Map<String, OAuth2Client> clients;
+
+    private final List<Map.Entry<String, OAuth2Client>> clientsByBaseUrl;
+
+    private final Map<OAuth2Client, OAuth2RequestInterceptor> interceptors = new IdentityHashMap<>();
+
+    /**
+     * @param defaultClient the client configured by oauth2.*, used for base urls no registration matches
+     * @param clients the clients of the registrations by name
+     * @param baseUrls the base urls of the registrations by name
+     * @throws OAuth2RuntimeException if two registrations have the same base url
+     */
+    public OAuth2ClientRegistry(OAuth2Client defaultClient, Map<String, OAuth2Client> clients, Map<String, String> baseUrls) {
+        this.defaultClient = defaultClient;
+        this.clients = new LinkedHashMap<>(clients);
+        getClients().forEach(client -> interceptors.computeIfAbsent(client, OAuth2RequestInterceptor::new));
+
+        List<Map.Entry<String, OAuth2Client>> byBaseUrl = new ArrayList<>();
+        Map<String, String> namesByBaseUrl = new HashMap<>();
+        baseUrls.forEach((name, baseUrl) -> {
+            if (baseUrl != null) {
+                String other = namesByBaseUrl.putIfAbsent(normalize(baseUrl), name);
+                if (other != null) {
+                    throw new OAuth2RuntimeException("The OAuth2 client registrations " + other + " and " + name
+                            + " have the same base url " + baseUrl + ".");
+                }
+                byBaseUrl.add(Map.entry(normalize(baseUrl), clients.get(name)));
+            }
+        });
+        // the most specific base url wins
+        byBaseUrl.sort(Comparator.comparingInt((Map.Entry<String, OAuth2Client> entry) -> entry.getKey().length()).reversed());
+        this.clientsByBaseUrl = List.copyOf(byBaseUrl);
+    }
+
+    /**
+     * @return the client configured by oauth2.*
+     */
+    public OAuth2Client getDefaultClient() {
+        return defaultClient;
+    }
+
+    /**
+     * @param name the name of a registration
+     * @return the client of the registration
+     * @throws OAuth2RuntimeException if there is no registration with the name
+     */
+    public OAuth2Client getClient(String name) {
+        OAuth2Client client = clients.get(name);
+        if (client == null) {
+            throw new OAuth2RuntimeException("There is no OAuth2 client registration named " + name + ".");
+        }
+        return client;
+    }
+
+    /**
+     * @return the clients of the registrations by name, without the default client
+     */
+    public Map<String, OAuth2Client> getRegistrations() {
+        return Collections.unmodifiableMap(clients);
+    }
+
+    /**
+     * @return the default client and the clients of all registrations
+     */
+    public Collection<OAuth2Client> getClients() {
+        List<OAuth2Client> all = new ArrayList<>();
+        all.add(defaultClient);
+        all.addAll(clients.values());
+        return all;
+    }
+
+    /**
+     * @param baseUrl the base url of an engine
+     * @return the client of the registration with the longest base url matching the given one, the default client if
+     * there is none
+     */
+    public OAuth2Client clientFor(String baseUrl) {
+        String normalized = normalize(baseUrl);
+        for (Map.Entry<String, OAuth2Client> entry : clientsByBaseUrl) {
+            String registered = entry.getKey();
+            if (normalized.equals(registered) || normalized.startsWith(registered + "/")) {
+                return entry.getValue();
+            }
+        }
+        return defaultClient;
+    }
+
+    /**
+     * @param baseUrl the base url the external task client is built with
+     * @return the interceptor adding the tokens of the client matching the base url, the same for all base urls of
+     * a client
+     */
+    public OAuth2RequestInterceptor interceptorFor(String baseUrl) {
+        return interceptors.get(clientFor(baseUrl));
+    }
+
+    /**
+     * @return the interceptor adding the tokens of the default client
+     */
+    public OAuth2RequestInterceptor getDefaultInterceptor() {
+        return interceptors.get(defaultClient);
+    }
+
+    private static String normalize(String baseUrl) {
+        String trimmed = baseUrl.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
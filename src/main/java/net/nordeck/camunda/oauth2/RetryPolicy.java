@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed token request is retried. Only failures which are likely transient are retried:
+ * 5xx and 429 responses, connections which could not be established, and timeouts of requests which may be repeated.
+ * Retries wait an exponentially growing,
+ * jittered backoff, or as long as the Retry-After header of the response asks for.
+ */
+public class RetryPolicy {
+
+    /**
+     * Never retries.
+     */
+    public static final RetryPolicy NO_RETRY = new RetryPolicy(
+            new OAuth2ConfigProperties.Retry(1, Duration.ZERO, Duration.ZERO, 1.0, 0.0));
+
+    private final OAuth2ConfigProperties.Retry retryProperties;
+
+    /**
+     * @param retryProperties the configuration of the retries
+     */
+    public RetryPolicy(OAuth2ConfigProperties.Retry retryProperties) {
+        this.retryProperties = retryProperties;
+    }
+
+    /**
+     * @param responseCode the status code of a token response
+     * @return true if the token endpoint is likely to answer a retry successfully
+     */
+    public static boolean isTransient(int responseCode) {
+        return responseCode >= 500 || responseCode == 429;
+    }
+
+    /**
+     * Only failures to connect are transient. Any later failure might have happened after the token endpoint consumed
+     * a refresh token, so a retry would fail anyway.
+     * @param e the exception a token request failed with
+     * @return true if the token endpoint is likely to answer a retry successfully
+     */
+    public static boolean isTransient(IOException e) {
+        return e instanceof ConnectException
+                || (e instanceof SocketTimeoutException
+                && e.getMessage() != null && e.getMessage().toLowerCase(Locale.ROOT).contains("connect"));
+    }
+
+    /**
+     * Failures to connect are retried for all requests. Read and call timeouts are only retried for idempotent
+     * requests, like the client_credentials grant, as a refresh token may have been consumed before the timeout.
+     * @param e the exception a token request failed with
+     * @param idempotent whether the request may be repeated without effect on the token endpoint
+     * @return true if the request shall be retried
+     */
+    public static boolean isRetryable(IOException e, boolean idempotent) {
+        return isTransient(e) || idempotent && e instanceof InterruptedIOException;
+    }
+
+    /**
+     * @param attempt the number of the attempt which failed, starting with 1
+     * @param retryAfter the Retry-After header of the response, null if there is none
+     * @param now the current time in milliseconds since epoch, to resolve a Retry-After date with
+     * @return the delay before the next attempt in milliseconds, or -1 if no further attempt shall be made
+     */
+    public long delayMillis(int attempt, String retryAfter, long now) {
+        if (attempt >= retryProperties.getMaxAttempts()) {
+            return -1;
+        }
+        long maxBackoff = retryProperties.getMaxBackoff().toMillis();
+        long requested = retryAfterMillis(retryAfter, now);
+        if (requested >= 0) {
+            return requested <= maxBackoff ? requested : -1;
+        }
+        return backoffMillis(attempt, maxBackoff);
+    }
+
+    /**
+     * @return the exponential backoff after the given attempt, of which the jitter fraction is randomized
+     */
+    private long backoffMillis(int attempt, long maxBackoff) {
+        double backoff = retryProperties.getInitialBackoff().toMillis() * Math.pow(retryProperties.getMultiplier(), attempt - 1);
+        double capped = Math.min(backoff, maxBackoff);
+        double jitter = capped * retryProperties.getJitter() * ThreadLocalRandom.current().nextDouble();
+        return (long) (capped - jitter);
+    }
+
+    /**
+     * @param retryAfter the value of a Retry-After header, either in seconds or as HTTP date
+     * @param now the current time in milliseconds since epoch
+     * @return the delay the header asks for in milliseconds, -1 if it is missing or invalid
+     */
+    static long retryAfterMillis(String retryAfter, long now) {
+        if (retryAfter == null || retryAfter.isBlank()) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                long retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, retryAt - now);
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+}
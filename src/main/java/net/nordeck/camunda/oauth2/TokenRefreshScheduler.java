@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.time.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the tokens of an OAuth2Client in the background before they expire, so requests intercepted by
+ * net.nordeck.camunda.oauth2.config.OAuth2RequestInterceptor never have to wait for the token endpoint.
+ */
+public class TokenRefreshScheduler implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenRefreshScheduler.class);
+    private static final long MIN_DELAY_MILLIS = 1000;
+
+    private final Collection<OAuth2Client> oAuth2Clients;
+
+    private final Clock clock;
+
+    private final OAuth2ConfigProperties.Refresh refreshProperties;
+
+    private final ScheduledExecutorService executor;
+
+    private volatile boolean closed;
+
+    /**
+     * @param oAuth2Client the client whose tokens shall be refreshed
+     * @param clock the clock to calculate the time until the next refresh with
+     * @param refreshProperties the configuration when to refresh the tokens
+     */
+    public TokenRefreshScheduler(OAuth2Client oAuth2Client, Clock clock, OAuth2ConfigProperties.Refresh refreshProperties) {
+        this(List.of(oAuth2Client), clock, refreshProperties);
+    }
+
+    /**
+     * @param oAuth2Clients the clients whose tokens shall be refreshed, all by the same scheduler thread
+     * @param clock the clock to calculate the time until the next refresh with
+     * @param refreshProperties the configuration when to refresh the tokens
+     */
+    public TokenRefreshScheduler(Collection<OAuth2Client> oAuth2Clients, Clock clock, OAuth2ConfigProperties.Refresh refreshProperties) {
+        this.oAuth2Clients = oAuth2Clients;
+        this.clock = clock;
+        this.refreshProperties = refreshProperties;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "oauth2-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules the first refresh for the current access tokens, fetching the first tokens if there are none yet.
+     */
+    public void start() {
+        oAuth2Clients.forEach(oAuth2Client -> refresh(oAuth2Client, null));
+    }
+
+    /**
+     * Stops refreshing the tokens. Refreshes in flight complete, but schedule no further ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Calculates the time until the given token shall be refreshed. If a skew is configured and shorter than the
+     * remaining lifetime, the token is refreshed that long before it expires, otherwise after the configured fraction
+     * of its remaining lifetime.
+     * @param accessToken the token to refresh
+     * @return the delay in milliseconds, but at least one second
+     */
+    long delayMillis(AccessToken accessToken) {
+        long remaining = accessToken.expiresAt() - clock.millis();
+        Duration skew = refreshProperties.getSkew();
+        long delay;
+        if (skew != null && skew.toMillis() < remaining) {
+            delay = remaining - skew.toMillis();
+        } else {
+            delay = (long) (remaining * refreshProperties.getLifetimeFraction());
+        }
+        return Math.max(delay, MIN_DELAY_MILLIS);
+    }
+
+    private void schedule(OAuth2Client oAuth2Client, AccessToken accessToken) {
+        long delay = delayMillis(accessToken);
+        LOGGER.debug("Scheduling token refresh in {} ms", delay);
+        schedule(oAuth2Client, accessToken, delay);
+    }
+
+    private void schedule(OAuth2Client oAuth2Client, AccessToken accessToken, long delayMillis) {
+        if (closed) {
+            return;
+        }
+        try {
+            executor.schedule(() -> refresh(oAuth2Client, accessToken), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the callbacks of refreshAsync would swallow it, and the tokens would silently no longer be refreshed
+            if (!closed) {
+                LOGGER.error("Unable to schedule the next token refresh, tokens are no longer refreshed in the background.", e);
+            }
+        }
+    }
+
+    private void refresh(OAuth2Client oAuth2Client, AccessToken accessToken) {
+        // the refresh runs asynchronously, so the scheduler thread is not blocked while waiting for the token endpoint
+        oAuth2Client.refreshAsync(accessToken).whenComplete((refreshed, e) -> {
+            if (e == null) {
+                schedule(oAuth2Client, refreshed);
+            } else {
+                LOGGER.warn("Unable to refresh tokens, retrying in {}", refreshProperties.getRetryInterval(), e);
+                schedule(oAuth2Client, accessToken, refreshProperties.getRetryInterval().toMillis());
+            }
+        });
+    }
+}
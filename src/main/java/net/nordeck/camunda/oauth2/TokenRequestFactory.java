@@ -16,41 +16,87 @@
  */
 package net.nordeck.camunda.oauth2;
 
+import net.nordeck.camunda.oauth2.auth.ClientAuthentication;
+import net.nordeck.camunda.oauth2.auth.ClientSecretAuthentication;
+import net.nordeck.camunda.oauth2.auth.FormEncoding;
 import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.time.SystemClock;
 import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
 /**
- * This factory object creates the requests our client is using to get access and refresh tokens
+ * This factory object creates the requests our client is using to get access and refresh tokens. As the client
+ * authentication, scope and token uri rarely change, the requests are encoded once per client authentication and only
+ * the refresh token is added per request.
  */
 public class TokenRequestFactory {
 
-    private final OAuth2ConfigProperties oAuth2ConfigProperties;
+    private static final MediaType FORM_URL_ENCODED = MediaType.get("application/x-www-form-urlencoded");
+    private static final byte[] REFRESH_TOKEN_PARAMETERS = "&grant_type=refresh_token&refresh_token=".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpUrl tokenUrl;
+
+    private final ClientAuthentication clientAuthentication;
+
+    private final byte[] tokenRequestParameters;
+
+    private volatile EncodedRequest tokenRequest;
 
     /**
      * @param oAuth2ConfigProperties
      */
     public TokenRequestFactory(OAuth2ConfigProperties oAuth2ConfigProperties) {
-        this.oAuth2ConfigProperties = oAuth2ConfigProperties;
+        this(oAuth2ConfigProperties.getTokenUri(), ClientAuthentication.create("oauth2", oAuth2ConfigProperties.getTokenUri(),
+                        oAuth2ConfigProperties.getClientId(), oAuth2ConfigProperties.getClientSecret(),
+                        oAuth2ConfigProperties.getClientAuthentication(), new SystemClock()),
+                oAuth2ConfigProperties.getScope());
     }
 
     /**
-     * creates an access token request with its oauth2 properties
-     * @return a correctly configured access token request
+     * @param tokenUri the uri of the token endpoint
+     * @param clientId the preconfigured client id
+     * @param clientSecret the preconfigured secret
+     * @param scope the scope to request
      */
-    public Request createTokenRequest() {
+    public TokenRequestFactory(String tokenUri, String clientId, String clientSecret, String scope) {
+        this(tokenUri, new ClientSecretAuthentication(clientId, clientSecret), scope);
+    }
+
+    /**
+     * @param tokenUri the uri of the token endpoint
+     * @param clientAuthentication how the client authenticates at the token endpoint
+     * @param scope the scope to request
+     */
+    public TokenRequestFactory(String tokenUri, ClientAuthentication clientAuthentication, String scope) {
+        this.tokenUrl = HttpUrl.get(tokenUri);
+        this.clientAuthentication = clientAuthentication;
+
         RequestBody formBody = new FormBody.Builder()
-                .add("client_id", oAuth2ConfigProperties.getClientId())
-                .add("client_secret", oAuth2ConfigProperties.getClientSecret())
                 .add("grant_type", "client_credentials")
-                .add("scope", oAuth2ConfigProperties.getScope())
+                .add("scope", scope)
                 .build();
+        this.tokenRequestParameters = concat(new byte[]{'&'}, FormEncoding.encode(formBody));
+    }
 
-        return new Request.Builder()
-                .url(oAuth2ConfigProperties.getTokenUri())
-                .post(formBody)
-                .build();
+    /**
+     * creates an access token request with its oauth2 properties
+     * @return a correctly configured access token request, the same immutable instance on every call as long as the
+     * client authentication does not change
+     */
+    public Request createTokenRequest() {
+        byte[] authentication = clientAuthentication.formParameters();
+        EncodedRequest current = tokenRequest;
+        if (current == null || current.authentication() != authentication) {
+            current = new EncodedRequest(authentication, post(concat(authentication, tokenRequestParameters)));
+            tokenRequest = current;
+        }
+        return current.request();
     }
 
     /**
@@ -59,16 +105,29 @@ public class TokenRequestFactory {
      * @return a correctly configured refresh token request
      */
     public Request createRefreshTokenRequest(String refreshToken) {
-        RequestBody formBody = new FormBody.Builder()
-                .add("client_id", oAuth2ConfigProperties.getClientId())
-                .add("client_secret", oAuth2ConfigProperties.getClientSecret())
-                .add("refresh_token", refreshToken)
-                .add("grant_type", "refresh_token")
-                .build();
+        byte[] encodedRefreshToken = URLEncoder.encode(refreshToken, StandardCharsets.UTF_8).getBytes(StandardCharsets.US_ASCII);
+
+        return post(concat(concat(clientAuthentication.formParameters(), REFRESH_TOKEN_PARAMETERS), encodedRefreshToken));
+    }
 
+    private Request post(byte[] formBody) {
         return new Request.Builder()
-                .url(oAuth2ConfigProperties.getTokenUri())
-                .post(formBody)
+                .url(tokenUrl)
+                .post(RequestBody.create(formBody, FORM_URL_ENCODED))
                 .build();
     }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    /**
+     * @param authentication the form parameters of the client authentication the request was encoded with
+     * @param request the encoded request
+     */
+    private record EncodedRequest(byte[] authentication, Request request) {
+    }
 }
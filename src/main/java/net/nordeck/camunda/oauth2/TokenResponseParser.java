@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import net.nordeck.camunda.oauth2.dto.TokenResponse;
+import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+
+/**
+ * Parses token responses in a single pass, streaming straight from the response body. Bodies larger than the configured
+ * maximum are rejected, before or while reading them.
+ */
+public class TokenResponseParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final long maxResponseSize;
+
+    /**
+     * @param maxResponseSize the maximum accepted size of a token response in bytes
+     */
+    public TokenResponseParser(long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * @param body the body of a successful token response
+     * @return the parsed token response
+     * @throws TokenResponseInvalidException if the body is too large or not a JSON object
+     * @throws IOException if reading the body fails
+     */
+    public TokenResponse parse(ResponseBody body) throws IOException {
+        if (body.contentLength() > maxResponseSize) {
+            throw tooLarge();
+        }
+
+        String accessToken = null;
+        String refreshToken = null;
+        Long expiresIn = null;
+        Long refreshExpiresIn = null;
+        String tokenType = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(Okio.buffer(limit(body.source())).inputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new TokenResponseInvalidException("The token response is not a JSON object.");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "access_token" -> accessToken = parser.getValueAsString();
+                    case "refresh_token" -> refreshToken = parser.getValueAsString();
+                    case "expires_in" -> expiresIn = value == JsonToken.VALUE_NULL ? null : parser.getValueAsLong();
+                    case "refresh_expires_in" -> refreshExpiresIn = value == JsonToken.VALUE_NULL ? null : parser.getValueAsLong();
+                    case "token_type" -> tokenType = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new TokenResponse(accessToken, refreshToken, expiresIn, refreshExpiresIn, tokenType);
+    }
+
+    /**
+     * Guards against bodies without or with a wrong content length.
+     */
+    private Source limit(Source source) {
+        return new ForwardingSource(source) {
+            private long bytesRead;
+
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    bytesRead += read;
+                    if (bytesRead > maxResponseSize) {
+                        throw tooLarge();
+                    }
+                }
+                return read;
+            }
+        };
+    }
+
+    private TokenResponseInvalidException tooLarge() {
+        return new TokenResponseInvalidException("The token response exceeds the maximum size of " + maxResponseSize + " bytes.");
+    }
+}
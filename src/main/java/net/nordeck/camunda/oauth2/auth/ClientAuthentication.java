@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.auth;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import net.nordeck.camunda.oauth2.time.Clock;
+
+/**
+ * Authenticates the client at the token endpoint with form parameters of the token requests.
+ */
+public interface ClientAuthentication {
+
+    /**
+     * The same array is returned as long as the parameters do not change, so the token requests built from them can
+     * be reused.
+     * @return the url encoded form parameters authenticating the client, starting with client_id
+     */
+    byte[] formParameters();
+
+    /**
+     * @param prefix the prefix of the client's properties, oauth2 or oauth2.registrations.&lt;name&gt;
+     * @param tokenUri the uri of the token endpoint, the default audience of client assertions
+     * @param clientId the preconfigured client id
+     * @param clientSecret the preconfigured secret, only required for client_secret_post
+     * @param properties the configuration of the client authentication method
+     * @param clock the clock to date client assertions with
+     * @return the client authentication of the configured method
+     */
+    static ClientAuthentication create(String prefix, String tokenUri, String clientId, String clientSecret,
+                                       OAuth2ConfigProperties.ClientAuthentication properties, Clock clock) {
+        return switch (properties.getMethod()) {
+            case CLIENT_SECRET_POST -> {
+                if (clientSecret == null || clientSecret.isBlank()) {
+                    throw new OAuth2RuntimeException(prefix + ".client-secret is required for client_secret_post.");
+                }
+                yield new ClientSecretAuthentication(clientId, clientSecret);
+            }
+            case PRIVATE_KEY_JWT -> {
+                if (properties.getPrivateKey() == null) {
+                    throw new OAuth2RuntimeException("oauth2.client-authentication.private-key is required for private_key_jwt.");
+                }
+                yield new PrivateKeyJwtAuthentication(clientId,
+                        properties.getAudience() == null ? tokenUri : properties.getAudience(),
+                        PrivateKeys.algorithm(properties.getAlgorithm(), PrivateKeys.read(properties.getPrivateKey())),
+                        properties.getKeyId(), properties.getAssertionLifetime(), properties.isReuseAssertions(), clock);
+            }
+            case TLS_CLIENT_AUTH -> {
+                if (properties.getKeyStore() == null) {
+                    throw new OAuth2RuntimeException("oauth2.client-authentication.key-store is required for tls_client_auth.");
+                }
+                yield new TlsClientAuthentication(clientId);
+            }
+        };
+    }
+}
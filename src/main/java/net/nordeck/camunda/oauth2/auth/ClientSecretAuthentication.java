@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.auth;
+
+import okhttp3.FormBody;
+
+/**
+ * Authenticates the client with its secret in the form body (client_secret_post).
+ */
+public class ClientSecretAuthentication implements ClientAuthentication {
+
+    private final byte[] formParameters;
+
+    /**
+     * @param clientId the preconfigured client id
+     * @param clientSecret the preconfigured secret
+     */
+    public ClientSecretAuthentication(String clientId, String clientSecret) {
+        this.formParameters = FormEncoding.encode(new FormBody.Builder()
+                .add("client_id", clientId)
+                .add("client_secret", clientSecret)
+                .build());
+    }
+
+    @Override
+    public byte[] formParameters() {
+        return formParameters;
+    }
+}
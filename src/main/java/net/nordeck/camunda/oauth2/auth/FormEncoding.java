@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.auth;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+import java.io.IOException;
+
+/**
+ * Encodes the form parameters of the token requests once, so they are sent as they are afterwards.
+ */
+public final class FormEncoding {
+
+    private FormEncoding() {
+    }
+
+    /**
+     * @param formBody the form parameters
+     * @return the url encoded form parameters
+     */
+    public static byte[] encode(RequestBody formBody) {
+        try (Buffer buffer = new Buffer()) {
+            formBody.writeTo(buffer);
+            return buffer.readByteArray();
+        } catch (IOException e) {
+            // writing to an in-memory buffer does not fail
+            throw new IllegalStateException(e);
+        }
+    }
+}
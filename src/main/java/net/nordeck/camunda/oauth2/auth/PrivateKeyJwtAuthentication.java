@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.auth;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import net.nordeck.camunda.oauth2.time.Clock;
+import okhttp3.FormBody;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Authenticates the client with an assertion signed with its private key (private_key_jwt, RFC 7523). Each token
+ * request gets an assertion with a fresh jti, as RFC 7523 lets identity providers reject replayed ones. Signing is
+ * expensive with RSA, so if reuse is enabled an assertion is reused for the first half of its lifetime instead.
+ */
+public class PrivateKeyJwtAuthentication implements ClientAuthentication {
+
+    static final String CLIENT_ASSERTION_TYPE = "urn:ietf:params:oauth:client-assertion-type:jwt-bearer";
+
+    private final String clientId;
+    private final String audience;
+    private final Algorithm algorithm;
+    private final String keyId;
+    private final long lifetimeMillis;
+    private final boolean reuse;
+    private final Clock clock;
+
+    private volatile Assertion assertion;
+
+    /**
+     * @param clientId the preconfigured client id, the issuer and subject of the assertions
+     * @param audience the audience of the assertions, usually the token uri
+     * @param algorithm the algorithm signing with the private key of the client
+     * @param keyId the optional kid header of the assertions
+     * @param lifetime how long an assertion is valid
+     * @param reuse whether an assertion is reused for the first half of its lifetime
+     * @param clock the clock to date the assertions with
+     */
+    public PrivateKeyJwtAuthentication(String clientId, String audience, Algorithm algorithm, String keyId,
+                                       Duration lifetime, boolean reuse, Clock clock) {
+        this.clientId = clientId;
+        this.audience = audience;
+        this.algorithm = algorithm;
+        this.keyId = keyId;
+        this.lifetimeMillis = lifetime.toMillis();
+        this.reuse = reuse;
+        this.clock = clock;
+    }
+
+    /**
+     * Concurrent callers may both sign a new assertion when the current one is due, either one is fine to use.
+     */
+    @Override
+    public byte[] formParameters() {
+        long now = clock.millis();
+        Assertion current = assertion;
+        if (!reuse || current == null || now >= current.renewAt()) {
+            current = new Assertion(encode(sign(now)), now + lifetimeMillis / 2);
+            assertion = current;
+        }
+        return current.formParameters();
+    }
+
+    private String sign(long now) {
+        JWTCreator.Builder builder = JWT.create();
+        if (keyId != null) {
+            builder.withKeyId(keyId);
+        }
+        return builder
+                .withIssuer(clientId)
+                .withSubject(clientId)
+                .withAudience(audience)
+                .withJWTId(UUID.randomUUID().toString())
+                .withIssuedAt(Instant.ofEpochMilli(now))
+                .withExpiresAt(Instant.ofEpochMilli(now + lifetimeMillis))
+                .sign(algorithm);
+    }
+
+    private byte[] encode(String clientAssertion) {
+        return FormEncoding.encode(new FormBody.Builder()
+                .add("client_id", clientId)
+                .add("client_assertion_type", CLIENT_ASSERTION_TYPE)
+                .add("client_assertion", clientAssertion)
+                .build());
+    }
+
+    /**
+     * @param formParameters the encoded form parameters with the signed assertion
+     * @param renewAt when to sign a new assertion in milliseconds since epoch
+     */
+    private record Assertion(byte[] formParameters, long renewAt) {
+    }
+}
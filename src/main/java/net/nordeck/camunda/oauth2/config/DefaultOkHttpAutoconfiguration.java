@@ -17,24 +17,28 @@
 package net.nordeck.camunda.oauth2.config;
 
 import okhttp3.OkHttpClient;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
- * When LogbookInterceptor is missing we need an OkHttpClient without any logging.
+ * Unless Logbook is enabled for the token requests we need an OkHttpClient without any logging.
  */
 @Configuration
-@ConditionalOnMissingClass("org.zalando.logbook.okhttp.LogbookInterceptor")
+@EnableConfigurationProperties(OAuth2ConfigProperties.class)
 public class DefaultOkHttpAutoconfiguration {
 
     /**
-     * This method provides a new Instance of the http client.
+     * This method provides a new Instance of the http client used to talk to the token endpoint.
+     * @param oAuth2ConfigProperties the properties which configure the http client
      * @return an Instance of OkHttpClient (okhttp3.OkHttpClient)
      */
-    @Bean
-    public OkHttpClient httpClient() {
-        return new OkHttpClient.Builder()
+    @Bean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME)
+    @ConditionalOnMissingBean(name = OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME)
+    public OkHttpClient oAuth2HttpClient(OAuth2ConfigProperties oAuth2ConfigProperties) {
+        return OAuth2HttpClientFactory.newBuilder(oAuth2ConfigProperties.getHttp(),
+                oAuth2ConfigProperties.getClientAuthentication())
                 .build();
     }
 
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import org.camunda.bpm.client.backoff.BackoffStrategy;
+import org.camunda.bpm.client.backoff.ErrorAwareBackoffStrategy;
+import org.camunda.bpm.client.exception.ExternalTaskClientException;
+import org.camunda.bpm.client.exception.RestException;
+import org.camunda.bpm.client.task.ExternalTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * org.camunda.bpm.client.backoff.ErrorAwareBackoffStrategy implementation which invalidates the access token when the
+ * engine rejects a fetch and lock request with 401, and replays the request once without backing off. Otherwise, and
+ * if the replay is rejected too, it backs off like the given strategy. The invalidated token is the one the interceptor
+ * sent the rejected request with, so give it the interceptor the external task client was built with.
+ */
+public class OAuth2BackoffStrategy implements ErrorAwareBackoffStrategy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OAuth2BackoffStrategy.class);
+    private static final int UNAUTHORIZED = 401;
+
+    private final OAuth2RequestInterceptor interceptor;
+    private final BackoffStrategy delegate;
+
+    // only used by the thread fetching and locking tasks
+    private boolean replay;
+
+    /**
+     * @param interceptor the interceptor the fetch and lock requests are sent through
+     * @param delegate the strategy to back off with, unless a request is replayed
+     */
+    public OAuth2BackoffStrategy(OAuth2RequestInterceptor interceptor, BackoffStrategy delegate) {
+        this.interceptor = interceptor;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void reconfigure(List<ExternalTask> externalTasks, ExternalTaskClientException error) {
+        boolean replayed = replay;
+        replay = false;
+        if (!replayed && isUnauthorized(error)) {
+            try {
+                // fetch and lock requests are sent on the thread reconfiguring the strategy
+                if (interceptor.invalidateSentAccessToken() != null) {
+                    replay = true;
+                    return;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to replace the access token the engine rejected.", e);
+            }
+        }
+        if (delegate instanceof ErrorAwareBackoffStrategy errorAwareDelegate) {
+            errorAwareDelegate.reconfigure(externalTasks, error);
+        } else {
+            delegate.reconfigure(externalTasks);
+        }
+    }
+
+    @Override
+    public long calculateBackoffTime() {
+        return replay ? 0 : delegate.calculateBackoffTime();
+    }
+
+    /**
+     * @param error an error of the external task client, may be null
+     * @return true if the error was caused by a 401 response of the engine
+     */
+    static boolean isUnauthorized(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RestException restException
+                    && Integer.valueOf(UNAUTHORIZED).equals(restException.getHttpStatusCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -16,14 +16,50 @@
  */
 package net.nordeck.camunda.oauth2.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import net.nordeck.camunda.oauth2.health.OAuth2HealthIndicator;
+import net.nordeck.camunda.oauth2.metrics.MicrometerOAuth2ClientMetrics;
+import net.nordeck.camunda.oauth2.metrics.OAuth2ClientMetrics;
+import net.nordeck.camunda.oauth2.metrics.OAuth2ClientMetricsFactory;
+import net.nordeck.camunda.oauth2.reactive.OAuth2ExchangeFilterFunction;
+import net.nordeck.camunda.oauth2.reactive.ReactiveOAuth2TokenSource;
+import net.nordeck.camunda.oauth2.store.DistributedTokenCache;
+import net.nordeck.camunda.oauth2.store.DistributedTokenStore;
+import net.nordeck.camunda.oauth2.store.FileTokenStore;
+import net.nordeck.camunda.oauth2.store.InMemoryTokenStore;
+import net.nordeck.camunda.oauth2.store.JdbcDistributedTokenCache;
+import net.nordeck.camunda.oauth2.store.TokenStore;
+import net.nordeck.camunda.oauth2.store.TokenStoreFactory;
 import net.nordeck.camunda.oauth2.time.Clock;
-import net.nordeck.camunda.oauth2.time.NewDateClock;
+import net.nordeck.camunda.oauth2.time.SystemClock;
+import net.nordeck.camunda.oauth2.CircuitBreaker;
 import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.OAuth2ClientPrewarmer;
+import net.nordeck.camunda.oauth2.OAuth2ClientRegistry;
+import net.nordeck.camunda.oauth2.RetryPolicy;
+import net.nordeck.camunda.oauth2.TokenRefreshScheduler;
 import net.nordeck.camunda.oauth2.TokenRequestFactory;
+import net.nordeck.camunda.oauth2.TokenResponseParser;
+import net.nordeck.camunda.oauth2.auth.ClientAuthentication;
 import okhttp3.OkHttpClient;
+import org.camunda.bpm.client.backoff.BackoffStrategy;
+import org.camunda.bpm.client.backoff.ExponentialBackoffStrategy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This is the main configuration of the OAuth2Client used.
@@ -32,48 +68,203 @@ import org.springframework.context.annotation.Configuration;
 @EnableConfigurationProperties(OAuth2ConfigProperties.class)
 public class OAuth2ClientAutoconfiguration {
 
+    /**
+     * The name of the okhttp3.OkHttpClient bean used to talk to the token endpoint. Define a bean with this name to
+     * replace it.
+     */
+    public static final String HTTP_CLIENT_BEAN_NAME = "oAuth2HttpClient";
+
     /**
      * Create a new instance of net.nordeck.camunda.oauth2.OAuth2Client.
      *
      * @param tokenRequestFactory - the TokenRequestFactory to use
-     * @param httpClient - the OkHttpClient to use
+     * @param httpClient - the OkHttpClient to talk to the token endpoint with
      * @param tokenValidator - an instance of a validator to provide checks for the Token
+     * @param clock - the clock to calculate the expiry of the tokens with
+     * @param metrics - the factory of the metrics to record to per client, if Micrometer is available
+     * @param tokenStoreFactory - the factory of the store to keep the tokens in
+     * @param oAuth2ConfigProperties - the properties which configure when to fetch the first tokens, how large
+     *                               token responses may be and how failed token requests are retried
      * @return a new instance of net.nordeck.camunda.oauth2.OAuth2Client
      */
     @Bean
-    public OAuth2Client oAuth2Client(TokenRequestFactory tokenRequestFactory, OkHttpClient httpClient, TokenValidator tokenValidator) {
-        return new OAuth2Client(tokenRequestFactory, httpClient, tokenValidator);
+    public OAuth2Client oAuth2Client(TokenRequestFactory tokenRequestFactory,
+                                     @Qualifier(HTTP_CLIENT_BEAN_NAME) OkHttpClient httpClient, TokenValidator tokenValidator,
+                                     Clock clock, ObjectProvider<OAuth2ClientMetricsFactory> metrics,
+                                     TokenStoreFactory tokenStoreFactory, OAuth2ConfigProperties oAuth2ConfigProperties) {
+        return newOAuth2Client(tokenRequestFactory, httpClient, tokenValidator, clock,
+                metrics.getIfAvailable(() -> OAuth2ClientMetricsFactory.NOOP).create(OAuth2ClientRegistry.DEFAULT_CLIENT_NAME),
+                tokenStoreFactory.create(tokenStoreKey(oAuth2ConfigProperties.getTokenUri(),
+                        oAuth2ConfigProperties.getClientId(), oAuth2ConfigProperties.getScope())),
+                oAuth2ConfigProperties);
+    }
+
+    /**
+     * Create the registry of the default OAuth2Client and one further OAuth2Client per oauth2.registrations.&lt;name&gt;.
+     * All clients share the http client and with it its connection pool.
+     *
+     * @param oAuth2Client - the default client configured by oauth2.*
+     * @param httpClient - the OkHttpClient to talk to the token endpoints with
+     * @param tokenValidator - an instance of a validator to provide checks for the Token
+     * @param clock - the clock to calculate the expiry of the tokens with
+     * @param metrics - the factory of the metrics to record to per client, if Micrometer is available
+     * @param tokenStoreFactory - the factory of the stores to keep the tokens in
+     * @param oAuth2ConfigProperties - the properties which configure the registrations
+     * @return a new instance of net.nordeck.camunda.oauth2.OAuth2ClientRegistry
+     */
+    @Bean
+    public OAuth2ClientRegistry oAuth2ClientRegistry(OAuth2Client oAuth2Client,
+                                                     @Qualifier(HTTP_CLIENT_BEAN_NAME) OkHttpClient httpClient,
+                                                     TokenValidator tokenValidator, Clock clock,
+                                                     ObjectProvider<OAuth2ClientMetricsFactory> metrics,
+                                                     TokenStoreFactory tokenStoreFactory,
+                                                     OAuth2ConfigProperties oAuth2ConfigProperties) {
+        OAuth2ClientMetricsFactory metricsFactory = metrics.getIfAvailable(() -> OAuth2ClientMetricsFactory.NOOP);
+        Map<String, OAuth2Client> clients = new LinkedHashMap<>();
+        Map<String, String> baseUrls = new LinkedHashMap<>();
+        oAuth2ConfigProperties.getRegistrations().forEach((name, registration) -> {
+            TokenRequestFactory tokenRequestFactory = new TokenRequestFactory(registration.getTokenUri(),
+                    ClientAuthentication.create("oauth2.registrations." + name, registration.getTokenUri(),
+                            registration.getClientId(), registration.getClientSecret(),
+                            oAuth2ConfigProperties.getClientAuthentication(), clock),
+                    registration.getScope());
+            clients.put(name, newOAuth2Client(tokenRequestFactory, httpClient, tokenValidator, clock, metricsFactory.create(name),
+                    tokenStoreFactory.create(tokenStoreKey(registration.getTokenUri(), registration.getClientId(),
+                            registration.getScope())),
+                    oAuth2ConfigProperties));
+            baseUrls.put(name, registration.getBaseUrl());
+        });
+        return new OAuth2ClientRegistry(oAuth2Client, clients, baseUrls);
+    }
+
+    private static OAuth2Client newOAuth2Client(TokenRequestFactory tokenRequestFactory, OkHttpClient httpClient,
+                                                TokenValidator tokenValidator, Clock clock, OAuth2ClientMetrics metrics,
+                                                TokenStore tokenStore,
+                                                OAuth2ConfigProperties oAuth2ConfigProperties) {
+        return OAuth2Client.builder(tokenRequestFactory, httpClient)
+                .tokenValidator(tokenValidator)
+                .tokenResponseParser(new TokenResponseParser(oAuth2ConfigProperties.getMaxResponseSize().toBytes()))
+                .clock(clock)
+                .clockSkew(oAuth2ConfigProperties.getClockSkew())
+                .metrics(metrics)
+                .retryPolicy(new RetryPolicy(oAuth2ConfigProperties.getRetry()))
+                .circuitBreaker(new CircuitBreaker(oAuth2ConfigProperties.getCircuitBreaker(), clock))
+                .grace(oAuth2ConfigProperties.getGrace())
+                .startupMode(oAuth2ConfigProperties.getStartup())
+                .tokenStore(tokenStore)
+                .build();
+    }
+
+    /**
+     * @return the key of the tokens of a client, the same for all clients sharing a stored token
+     */
+    private static String tokenStoreKey(String tokenUri, String clientId, String scope) {
+        return tokenUri + " " + clientId + " " + scope;
+    }
+
+    /**
+     * Provide the factory of the stores the tokens are kept in, configured by oauth2.token-store.*. Define a bean of
+     * this type to plug in another store.
+     * @param distributedTokenCache the cache of the distributed store, if defined
+     * @param dataSource the data source of the distributed store, if no cache is defined
+     * @param clock the clock to expire the leases of the distributed store with
+     * @param oAuth2ConfigProperties the properties which configure the store
+     * @return a factory of in memory stores, of file stores in the configured directory or of distributed stores
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public TokenStoreFactory tokenStoreFactory(ObjectProvider<DistributedTokenCache> distributedTokenCache,
+                                               ObjectProvider<DataSource> dataSource, Clock clock,
+                                               OAuth2ConfigProperties oAuth2ConfigProperties) {
+        OAuth2ConfigProperties.TokenStore tokenStore = oAuth2ConfigProperties.getTokenStore();
+        switch (tokenStore.getType()) {
+            case FILE -> {
+                if (tokenStore.getDirectory() == null) {
+                    throw new OAuth2RuntimeException("oauth2.token-store.directory is required for the file token store.");
+                }
+                Path directory = Path.of(tokenStore.getDirectory());
+                return key -> new FileTokenStore(directory, key);
+            }
+            case DISTRIBUTED -> {
+                DistributedTokenCache cache = distributedTokenCache.getIfAvailable(() -> {
+                    DataSource source = dataSource.getIfAvailable();
+                    if (source == null) {
+                        throw new OAuth2RuntimeException("A DistributedTokenCache or DataSource bean is required for the distributed token store.");
+                    }
+                    return new JdbcDistributedTokenCache(source, tokenStore.getTable(), clock, tokenStore.getLeaseClockSkew());
+                });
+                return key -> new DistributedTokenStore(cache, key, tokenStore.getLeaseDuration(), tokenStore.getPollInterval());
+            }
+            default -> {
+                return key -> new InMemoryTokenStore();
+            }
+        }
+    }
+
+    /**
+     * Refresh the tokens in the background before they expire, when enabled by oauth2.refresh.enabled.
+     * @param oAuth2ClientRegistry the registry of the clients whose tokens shall be refreshed
+     * @param clock an instance of net.nordeck.camunda.oauth2.time.Clock
+     * @param oAuth2ConfigProperties the properties which configure when to refresh
+     * @return a started net.nordeck.camunda.oauth2.TokenRefreshScheduler
+     */
+    @Bean(initMethod = "start")
+    @ConditionalOnProperty(prefix = "oauth2.refresh", name = "enabled", havingValue = "true")
+    public TokenRefreshScheduler tokenRefreshScheduler(OAuth2ClientRegistry oAuth2ClientRegistry, Clock clock,
+                                                       OAuth2ConfigProperties oAuth2ConfigProperties) {
+        return new TokenRefreshScheduler(oAuth2ClientRegistry.getClients(), clock, oAuth2ConfigProperties.getRefresh());
     }
 
     /**
      * Configure the org.camunda.bpm.client.interceptor.ClientRequestInterceptor to handle OAuth authentication.
-     * @param oAuth2Client the client to provide the access token
+     * @param oAuth2ClientRegistry the registry holding the interceptor of the default client
      * @return an instance of net.nordeck.camunda.oauth2.config.OAuth2RequestInterceptor which will provide an auth
      * header for the client
      */
     @Bean
-    public OAuth2RequestInterceptor oAuth2RequestInterceptor(OAuth2Client oAuth2Client) {
-        return new OAuth2RequestInterceptor(oAuth2Client);
+    public OAuth2RequestInterceptor oAuth2RequestInterceptor(OAuth2ClientRegistry oAuth2ClientRegistry) {
+        return oAuth2ClientRegistry.getDefaultInterceptor();
+    }
+
+    /**
+     * Replace the access token when the engine rejects a fetch and lock request with 401, and replay the request once,
+     * when enabled by oauth2.backoff.enabled, as it replaces the backoff strategy of the external task client.
+     * Otherwise the external task client backs off like it does by default. Define a bean of type
+     * org.camunda.bpm.client.backoff.BackoffStrategy to replace it, e.g. with an OAuth2BackoffStrategy wrapping another
+     * strategy. It replaces the tokens of the default client, build one with OAuth2ClientRegistry.interceptorFor(baseUrl)
+     * for external task clients using a registration.
+     * @param oAuth2RequestInterceptor the interceptor of the default client
+     * @return an instance of net.nordeck.camunda.oauth2.config.OAuth2BackoffStrategy
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "oauth2.backoff", name = "enabled", havingValue = "true")
+    @ConditionalOnMissingBean(BackoffStrategy.class)
+    public OAuth2BackoffStrategy oAuth2BackoffStrategy(OAuth2RequestInterceptor oAuth2RequestInterceptor) {
+        return new OAuth2BackoffStrategy(oAuth2RequestInterceptor, new ExponentialBackoffStrategy());
     }
 
     /**
      * Provide an instance of TokenRequestFactory.
      * @param oAuth2ConfigProperties a set of properties which configures net.nordeck.camunda.oauth2.TokenRequestFactory
+     * @param clock the clock to date client assertions with
      * @return an instance of net.nordeck.camunda.oauth2.TokenRequestFactory
      */
     @Bean
-    public TokenRequestFactory tokenRequestFactory(OAuth2ConfigProperties oAuth2ConfigProperties) {
-        return new TokenRequestFactory(oAuth2ConfigProperties);
+    public TokenRequestFactory tokenRequestFactory(OAuth2ConfigProperties oAuth2ConfigProperties, Clock clock) {
+        return new TokenRequestFactory(oAuth2ConfigProperties.getTokenUri(),
+                ClientAuthentication.create("oauth2", oAuth2ConfigProperties.getTokenUri(), oAuth2ConfigProperties.getClientId(),
+                        oAuth2ConfigProperties.getClientSecret(), oAuth2ConfigProperties.getClientAuthentication(), clock),
+                oAuth2ConfigProperties.getScope());
     }
 
     /**
-     * Provides an instance of NewDateClock.
+     * Provides an instance of SystemClock.
      *
      * @return an instance of an implementation of net.nordeck.camunda.oauth2.time.Clock
      */
     @Bean
     public Clock clock() {
-        return new NewDateClock();
+        return new SystemClock();
     }
 
     /**
@@ -87,4 +278,85 @@ public class OAuth2ClientAutoconfiguration {
         return new TokenValidator(clock);
     }
 
+    /**
+     * Records metrics of the OAuth2Client, when Micrometer is on the classpath and a MeterRegistry is present.
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MicrometerConfiguration {
+
+        /**
+         * @param meterRegistry the registry to register the meters at, if present
+         * @param clock an instance of net.nordeck.camunda.oauth2.time.Clock
+         * @return a factory of metrics recording to the MeterRegistry tagged with the name of their client, or of no
+         * metrics if there is none
+         */
+        @Bean
+        public OAuth2ClientMetricsFactory oAuth2ClientMetricsFactory(ObjectProvider<MeterRegistry> meterRegistry, Clock clock) {
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            return registry == null
+                    ? OAuth2ClientMetricsFactory.NOOP
+                    : clientName -> new MicrometerOAuth2ClientMetrics(registry, clock, clientName);
+        }
+    }
+
+    /**
+     * Fetches the tokens of all clients before the application is ready, if oauth2.prewarm.enabled is set.
+     * @param oAuth2ClientRegistry the registry of the clients to prewarm
+     * @param oAuth2ConfigProperties the properties which configure how long to wait for the tokens
+     * @return an instance of net.nordeck.camunda.oauth2.OAuth2ClientPrewarmer
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "oauth2.prewarm", name = "enabled", havingValue = "true")
+    public OAuth2ClientPrewarmer oAuth2ClientPrewarmer(OAuth2ClientRegistry oAuth2ClientRegistry,
+                                                       OAuth2ConfigProperties oAuth2ConfigProperties) {
+        return new OAuth2ClientPrewarmer(oAuth2ClientRegistry.getClients(), oAuth2ConfigProperties.getPrewarm().getTimeout());
+    }
+
+    /**
+     * Reports the state of the tokens as health indicator named oauth2, when Spring Boot Actuator is on the classpath.
+     */
+    @Configuration
+    @ConditionalOnClass(HealthIndicator.class)
+    static class HealthConfiguration {
+
+        /**
+         * @param oAuth2ClientRegistry the registry of the clients to report on
+         * @param clock the clock to calculate the age and the time to expiry of the tokens with
+         * @return an instance of net.nordeck.camunda.oauth2.health.OAuth2HealthIndicator
+         */
+        @Bean
+        @ConditionalOnMissingBean(name = "oauth2HealthIndicator")
+        public OAuth2HealthIndicator oauth2HealthIndicator(OAuth2ClientRegistry oAuth2ClientRegistry, Clock clock) {
+            return new OAuth2HealthIndicator(oAuth2ClientRegistry, clock);
+        }
+    }
+
+    /**
+     * Provides the tokens of the OAuth2Client to WebClients, when Spring WebFlux is on the classpath.
+     */
+    @Configuration
+    @ConditionalOnClass(ExchangeFilterFunction.class)
+    static class WebFluxConfiguration {
+
+        /**
+         * @param oAuth2Client the client to provide the access token
+         * @return a source of the access tokens for reactive callers, sharing the tokens of the interceptor
+         */
+        @Bean
+        public ReactiveOAuth2TokenSource reactiveOAuth2TokenSource(OAuth2Client oAuth2Client) {
+            return new ReactiveOAuth2TokenSource(oAuth2Client);
+        }
+
+        /**
+         * @param reactiveOAuth2TokenSource the source of the access tokens
+         * @return an instance of net.nordeck.camunda.oauth2.reactive.OAuth2ExchangeFilterFunction which will provide
+         * an auth header for WebClients it is added to
+         */
+        @Bean
+        public OAuth2ExchangeFilterFunction oAuth2ExchangeFilterFunction(ReactiveOAuth2TokenSource reactiveOAuth2TokenSource) {
+            return new OAuth2ExchangeFilterFunction(reactiveOAuth2TokenSource);
+        }
+    }
+
 }
@@ -17,17 +17,22 @@
 package net.nordeck.camunda.oauth2.config;
 
 import jakarta.validation.constraints.NotBlank;
+import net.nordeck.camunda.oauth2.OAuth2ClientRegistry;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
+import java.util.Map;
 
 /**
  * Main client configuration.
  */
 @ConfigurationProperties(prefix = "oauth2")
 @Validated
-@ConstructorBinding
 public class OAuth2ConfigProperties {
     @NotBlank
     private final String issuerUri;
@@ -35,12 +40,36 @@ public class OAuth2ConfigProperties {
     private final String tokenUri;
     @NotBlank
     private final String clientId;
-    @NotBlank
     private final String clientSecret;
 
     @NotBlank
     private final String scope;
 
+    private final ClientAuthentication clientAuthentication;
+
+    private final StartupMode startup;
+
+    private final DataSize maxResponseSize;
+
+    private final Duration clockSkew;
+
+    private final Refresh refresh;
+
+    private final Http http;
+
+    private final Retry retry;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final Grace grace;
+
+    private final TokenStore tokenStore;
+
+    private final Logbook logbook;
+
+    private final Prewarm prewarm;
+
+    private final Map<String, Registration> registrations;
 
     /**
      *  a provided set of OAuth2 properties
@@ -55,11 +84,102 @@ public class OAuth2ConfigProperties {
                                   String clientId,
                                   String clientSecret,
                                   String scope) {
+        this(issuerUri, tokenUri, clientId, clientSecret, scope,
+                new ClientAuthentication(ClientAuthentication.Method.CLIENT_SECRET_POST, null, null, "RS256", null,
+                        Duration.ofMinutes(5), false, null, null, "PKCS12"),
+                StartupMode.EAGER, DataSize.ofKilobytes(64),
+                Duration.ofSeconds(5),
+                new Refresh(false, 0.8, null, Duration.ofSeconds(10)),
+                new Http(Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofSeconds(30), 5,
+                        Duration.ofMinutes(10), true, null, null, false),
+                Retry.defaults(),
+                CircuitBreaker.defaults(),
+                new Grace(false, Duration.ofSeconds(30), Duration.ofSeconds(5)),
+                new TokenStore(TokenStore.Type.MEMORY, null, "oauth2_token_cache", Duration.ofSeconds(30),
+                        Duration.ofMillis(200), Duration.ofSeconds(5)),
+                new Logbook(false, false),
+                new Prewarm(false, Duration.ofSeconds(30)),
+                Map.of());
+    }
+
+    /**
+     *  a provided set of OAuth2 properties
+     * @param issuerUri the issuer
+     * @param tokenUri the uri of the token
+     * @param clientId the preconfigured client id
+     * @param clientSecret the preconfigured secret
+     * @param scope a scope to be defined
+     * @param clientAuthentication how the client authenticates at the token endpoint
+     * @param startup when to fetch the first tokens
+     * @param maxResponseSize the maximum accepted size of a token response
+     * @param clockSkew the tolerated difference between the clocks of the identity provider and this host
+     * @param refresh the configuration of the proactive token refresh
+     * @param http the configuration of the http client used to talk to the token endpoint
+     * @param retry the configuration of retries of failed token requests
+     * @param circuitBreaker the configuration of the circuit breaker in front of the token endpoint
+     * @param grace the configuration of serving the current access token while it cannot be refreshed
+     * @param tokenStore the configuration of where the tokens are stored
+     * @param logbook the configuration of logging the token requests with Logbook
+     * @param prewarm the configuration of fetching the tokens before the application is ready
+     * @param registrations further clients by name, for external task clients of other engines
+     */
+    @ConstructorBinding
+    public OAuth2ConfigProperties(String issuerUri,
+                                  String tokenUri,
+                                  String clientId,
+                                  String clientSecret,
+                                  String scope,
+                                  @DefaultValue ClientAuthentication clientAuthentication,
+                                  @DefaultValue("eager") StartupMode startup,
+                                  @DefaultValue("64KB") DataSize maxResponseSize,
+                                  @DefaultValue("5s") Duration clockSkew,
+                                  @DefaultValue Refresh refresh,
+                                  @DefaultValue Http http,
+                                  @DefaultValue Retry retry,
+                                  @DefaultValue CircuitBreaker circuitBreaker,
+                                  @DefaultValue Grace grace,
+                                  @DefaultValue TokenStore tokenStore,
+                                  @DefaultValue Logbook logbook,
+                                  @DefaultValue Prewarm prewarm,
+                                  Map<String, Registration> registrations) {
         this.issuerUri = issuerUri;
         this.tokenUri = tokenUri;
         this.clientId = clientId;
         this.clientSecret = clientSecret;
         this.scope = scope;
+        this.clientAuthentication = clientAuthentication;
+        this.startup = startup;
+        this.maxResponseSize = maxResponseSize;
+        this.clockSkew = clockSkew;
+        this.refresh = refresh;
+        this.http = http;
+        this.retry = retry;
+        this.circuitBreaker = circuitBreaker;
+        this.grace = grace;
+        this.tokenStore = tokenStore;
+        this.logbook = logbook;
+        this.prewarm = prewarm;
+        this.registrations = registrations == null ? Map.of() : registrations;
+        this.registrations.forEach(OAuth2ConfigProperties::validate);
+    }
+
+    /**
+     * Fails the startup if a registration misses what is needed to fetch its tokens or to pick its client.
+     */
+    private static void validate(String name, Registration registration) {
+        if (OAuth2ClientRegistry.DEFAULT_CLIENT_NAME.equals(name)) {
+            throw new OAuth2RuntimeException("oauth2.registrations." + name + " is reserved for the client configured by oauth2.*.");
+        }
+        requireText(registration.getBaseUrl(), "oauth2.registrations." + name + ".base-url");
+        requireText(registration.getTokenUri(), "oauth2.registrations." + name + ".token-uri");
+        requireText(registration.getClientId(), "oauth2.registrations." + name + ".client-id");
+        requireText(registration.getScope(), "oauth2.registrations." + name + ".scope");
+    }
+
+    private static void requireText(String value, String property) {
+        if (value == null || value.isBlank()) {
+            throw new OAuth2RuntimeException(property + " is required.");
+        }
     }
 
     public String getIssuerUri() {
@@ -81,4 +201,615 @@ public class OAuth2ConfigProperties {
     public String getScope() {
         return scope;
     }
+
+    public ClientAuthentication getClientAuthentication() {
+        return clientAuthentication;
+    }
+
+    public StartupMode getStartup() {
+        return startup;
+    }
+
+    public DataSize getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public Duration getClockSkew() {
+        return clockSkew;
+    }
+
+    public Refresh getRefresh() {
+        return refresh;
+    }
+
+    public Http getHttp() {
+        return http;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Grace getGrace() {
+        return grace;
+    }
+
+    public TokenStore getTokenStore() {
+        return tokenStore;
+    }
+
+    public Logbook getLogbook() {
+        return logbook;
+    }
+
+    public Prewarm getPrewarm() {
+        return prewarm;
+    }
+
+    public Map<String, Registration> getRegistrations() {
+        return registrations;
+    }
+
+    /**
+     * Configuration of how the client authenticates at the token endpoint. The settings are shared by all
+     * registrations, each authenticating with its own client id.
+     */
+    public static class ClientAuthentication {
+
+        /**
+         * The client authentication method.
+         */
+        public enum Method {
+            /**
+             * Sends the client secret in the form body.
+             */
+            CLIENT_SECRET_POST,
+            /**
+             * Sends a client assertion signed with the private key, see RFC 7523.
+             */
+            PRIVATE_KEY_JWT,
+            /**
+             * Presents the client certificate of the key store in the TLS handshake, see RFC 8705.
+             */
+            TLS_CLIENT_AUTH
+        }
+
+        private final Method method;
+        private final String privateKey;
+        private final String keyId;
+        private final String algorithm;
+        private final String audience;
+        private final Duration assertionLifetime;
+        private final boolean reuseAssertions;
+        private final String keyStore;
+        private final String keyStorePassword;
+        private final String keyStoreType;
+
+        /**
+         * @param method the client authentication method
+         * @param privateKey the path of the PEM encoded PKCS#8 private key to sign client assertions with
+         * @param keyId the optional kid header of the client assertions
+         * @param algorithm the algorithm to sign client assertions with, RS256, RS384, RS512, ES256, ES384 or ES512
+         * @param audience the audience of the client assertions, the token uri if not set
+         * @param assertionLifetime how long a client assertion is valid
+         * @param reuseAssertions whether a client assertion is reused for half its lifetime instead of signing one
+         *                        per token request, only enable it if the identity provider accepts replayed assertions
+         * @param keyStore the path of the key store holding the client certificate for TLS client authentication
+         * @param keyStorePassword the password of the key store and its key
+         * @param keyStoreType the type of the key store
+         */
+        public ClientAuthentication(@DefaultValue("client_secret_post") Method method,
+                                    String privateKey,
+                                    String keyId,
+                                    @DefaultValue("RS256") String algorithm,
+                                    String audience,
+                                    @DefaultValue("5m") Duration assertionLifetime,
+                                    @DefaultValue("false") boolean reuseAssertions,
+                                    String keyStore,
+                                    String keyStorePassword,
+                                    @DefaultValue("PKCS12") String keyStoreType) {
+            this.method = method;
+            this.privateKey = privateKey;
+            this.keyId = keyId;
+            this.algorithm = algorithm;
+            this.audience = audience;
+            this.assertionLifetime = assertionLifetime;
+            this.reuseAssertions = reuseAssertions;
+            this.keyStore = keyStore;
+            this.keyStorePassword = keyStorePassword;
+            this.keyStoreType = keyStoreType;
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        public String getPrivateKey() {
+            return privateKey;
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public String getAudience() {
+            return audience;
+        }
+
+        public Duration getAssertionLifetime() {
+            return assertionLifetime;
+        }
+
+        public boolean isReuseAssertions() {
+            return reuseAssertions;
+        }
+
+        public String getKeyStore() {
+            return keyStore;
+        }
+
+        public String getKeyStorePassword() {
+            return keyStorePassword;
+        }
+
+        public String getKeyStoreType() {
+            return keyStoreType;
+        }
+    }
+
+    /**
+     * Configuration of the proactive token refresh, which refreshes the tokens in the background before they expire.
+     */
+    public static class Refresh {
+        private final boolean enabled;
+        private final double lifetimeFraction;
+        private final Duration skew;
+        private final Duration retryInterval;
+
+        /**
+         * @param enabled whether the tokens are refreshed in the background
+         * @param lifetimeFraction the fraction of the token lifetime after which the tokens are refreshed
+         * @param skew if set, the tokens are refreshed this long before they expire instead
+         * @param retryInterval the interval to retry a failed refresh in
+         */
+        public Refresh(@DefaultValue("false") boolean enabled,
+                       @DefaultValue("0.8") double lifetimeFraction,
+                       Duration skew,
+                       @DefaultValue("10s") Duration retryInterval) {
+            this.enabled = enabled;
+            this.lifetimeFraction = lifetimeFraction;
+            this.skew = skew;
+            this.retryInterval = retryInterval;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public double getLifetimeFraction() {
+            return lifetimeFraction;
+        }
+
+        public Duration getSkew() {
+            return skew;
+        }
+
+        public Duration getRetryInterval() {
+            return retryInterval;
+        }
+    }
+
+    /**
+     * Configuration of the http client used to talk to the token endpoint.
+     */
+    public static class Http {
+        private final Duration connectTimeout;
+        private final Duration readTimeout;
+        private final Duration callTimeout;
+        private final int maxIdleConnections;
+        private final Duration keepAliveDuration;
+        private final boolean http2;
+        private final Integer tlsSessionCacheSize;
+        private final Duration tlsSessionTimeout;
+        private final boolean virtualThreads;
+
+        /**
+         * @param connectTimeout the timeout to establish a connection
+         * @param readTimeout the timeout between two reads of a response
+         * @param callTimeout the timeout of a token request, including redirects; each retry has its own call timeout
+         * @param maxIdleConnections the maximum number of idle connections kept in the pool
+         * @param keepAliveDuration how long idle connections are kept in the pool
+         * @param http2 whether HTTP/2 is preferred over HTTP/1.1
+         * @param tlsSessionCacheSize if set, the number of TLS sessions cached for resumption
+         * @param tlsSessionTimeout if set, how long cached TLS sessions may be resumed
+         * @param virtualThreads whether the token requests run on virtual threads, requires Java 21 or later
+         */
+        public Http(@DefaultValue("10s") Duration connectTimeout,
+                    @DefaultValue("10s") Duration readTimeout,
+                    @DefaultValue("30s") Duration callTimeout,
+                    @DefaultValue("5") int maxIdleConnections,
+                    @DefaultValue("10m") Duration keepAliveDuration,
+                    @DefaultValue("true") boolean http2,
+                    Integer tlsSessionCacheSize,
+                    Duration tlsSessionTimeout,
+                    @DefaultValue("false") boolean virtualThreads) {
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.callTimeout = callTimeout;
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveDuration = keepAliveDuration;
+            this.http2 = http2;
+            this.tlsSessionCacheSize = tlsSessionCacheSize;
+            this.tlsSessionTimeout = tlsSessionTimeout;
+            this.virtualThreads = virtualThreads;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public Duration getCallTimeout() {
+            return callTimeout;
+        }
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public Duration getKeepAliveDuration() {
+            return keepAliveDuration;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public Integer getTlsSessionCacheSize() {
+            return tlsSessionCacheSize;
+        }
+
+        public Duration getTlsSessionTimeout() {
+            return tlsSessionTimeout;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+    }
+
+    /**
+     * Configuration of retries of token requests which failed for transient reasons, e.g. 5xx, 429 or connect failures.
+     */
+    public static class Retry {
+        private final int maxAttempts;
+        private final Duration initialBackoff;
+        private final Duration maxBackoff;
+        private final double multiplier;
+        private final double jitter;
+
+        /**
+         * @param maxAttempts the maximum number of attempts of a token request, 1 to disable retries
+         * @param initialBackoff the backoff before the first retry
+         * @param maxBackoff the maximum backoff, retries would have to wait longer for are not attempted
+         * @param multiplier the factor the backoff grows by with every retry
+         * @param jitter the fraction of the backoff which is randomized, between 0 and 1
+         */
+        public Retry(@DefaultValue("3") int maxAttempts,
+                     @DefaultValue("200ms") Duration initialBackoff,
+                     @DefaultValue("10s") Duration maxBackoff,
+                     @DefaultValue("2.0") double multiplier,
+                     @DefaultValue("0.5") double jitter) {
+            this.maxAttempts = maxAttempts;
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.multiplier = multiplier;
+            this.jitter = jitter;
+        }
+
+        /**
+         * @return the configuration oauth2.retry.* defaults to
+         */
+        public static Retry defaults() {
+            return new Retry(3, Duration.ofMillis(200), Duration.ofSeconds(10), 2.0, 0.5);
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public Duration getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+    }
+
+    /**
+     * Configuration of the circuit breaker, which fails token requests fast while the token endpoint is unavailable.
+     */
+    public static class CircuitBreaker {
+        private final boolean enabled;
+        private final int failureThreshold;
+        private final Duration openDuration;
+
+        /**
+         * @param enabled whether the circuit breaker is enabled
+         * @param failureThreshold the number of consecutive transient failures which open the circuit
+         * @param openDuration how long the circuit stays open before a single probe request is let through
+         */
+        public CircuitBreaker(@DefaultValue("true") boolean enabled,
+                              @DefaultValue("5") int failureThreshold,
+                              @DefaultValue("30s") Duration openDuration) {
+            this.enabled = enabled;
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+        }
+
+        /**
+         * @return the configuration oauth2.circuit-breaker.* defaults to
+         */
+        public static CircuitBreaker defaults() {
+            return new CircuitBreaker(true, 5, Duration.ofSeconds(30));
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+    }
+
+    /**
+     * Configuration of the grace mode, which refreshes the access token ahead of its expiry and keeps serving it while
+     * the refresh fails, as long as it has not expired.
+     */
+    public static class Grace {
+        private final boolean enabled;
+        private final Duration refreshAhead;
+        private final Duration failureCacheDuration;
+
+        /**
+         * @param enabled whether the grace mode is enabled
+         * @param refreshAhead how long before its expiry the access token is refreshed, while it is still served
+         * @param failureCacheDuration how long a failed refresh is not attempted again
+         */
+        public Grace(@DefaultValue("false") boolean enabled,
+                     @DefaultValue("30s") Duration refreshAhead,
+                     @DefaultValue("5s") Duration failureCacheDuration) {
+            this.enabled = enabled;
+            this.refreshAhead = refreshAhead;
+            this.failureCacheDuration = failureCacheDuration;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getRefreshAhead() {
+            return refreshAhead;
+        }
+
+        public Duration getFailureCacheDuration() {
+            return failureCacheDuration;
+        }
+    }
+
+    /**
+     * Configuration of where the tokens are stored. A file store lets the tokens survive restarts and shares them
+     * between the worker processes of a host using the same directory. A distributed store shares them between all
+     * nodes of a cluster.
+     */
+    public static class TokenStore {
+
+        /**
+         * The kind of store.
+         */
+        public enum Type {
+            /**
+             * Keeps the tokens in memory.
+             */
+            MEMORY,
+            /**
+             * Keeps the tokens in files in the configured directory.
+             */
+            FILE,
+            /**
+             * Keeps the tokens in the DistributedTokenCache bean, or in the configured table of the DataSource bean.
+             */
+            DISTRIBUTED
+        }
+
+        private final Type type;
+        private final String directory;
+        private final String table;
+        private final Duration leaseDuration;
+        private final Duration pollInterval;
+        private final Duration leaseClockSkew;
+
+        /**
+         * @param type the kind of store
+         * @param directory the directory of the file store
+         * @param table the table of the distributed store, if it uses the DataSource
+         * @param leaseDuration how long a node of the distributed store may fetch before another one takes over
+         * @param pollInterval how often the other nodes check for the tokens of the fetching node
+         * @param leaseClockSkew the tolerated difference between the clocks of the nodes of the distributed store
+         */
+        public TokenStore(@DefaultValue("memory") Type type,
+                          String directory,
+                          @DefaultValue("oauth2_token_cache") String table,
+                          @DefaultValue("30s") Duration leaseDuration,
+                          @DefaultValue("200ms") Duration pollInterval,
+                          @DefaultValue("5s") Duration leaseClockSkew) {
+            this.type = type;
+            this.directory = directory;
+            this.table = table;
+            this.leaseDuration = leaseDuration;
+            this.pollInterval = pollInterval;
+            this.leaseClockSkew = leaseClockSkew;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Duration getLeaseDuration() {
+            return leaseDuration;
+        }
+
+        public Duration getPollInterval() {
+            return pollInterval;
+        }
+
+        public Duration getLeaseClockSkew() {
+            return leaseClockSkew;
+        }
+    }
+
+    /**
+     * Configuration of logging the token requests with Logbook, if logbook-okhttp is on the classpath. Tokens and
+     * secrets are always redacted.
+     */
+    public static class Logbook {
+        private final boolean enabled;
+        private final boolean logBodies;
+
+        /**
+         * @param enabled whether the token requests are logged
+         * @param logBodies whether the bodies are buffered and logged too, instead of only the headers
+         */
+        public Logbook(@DefaultValue("false") boolean enabled,
+                       @DefaultValue("false") boolean logBodies) {
+            this.enabled = enabled;
+            this.logBodies = logBodies;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public boolean isLogBodies() {
+            return logBodies;
+        }
+    }
+
+    /**
+     * Configuration of fetching the tokens of all clients before the application reports to be ready, so the first
+     * tasks are not delayed by a token request.
+     */
+    public static class Prewarm {
+        private final boolean enabled;
+        private final Duration timeout;
+
+        /**
+         * @param enabled whether the tokens are fetched before the application is ready
+         * @param timeout how long to wait for the tokens, the application starts without them afterwards
+         */
+        public Prewarm(@DefaultValue("false") boolean enabled,
+                       @DefaultValue("30s") Duration timeout) {
+            this.enabled = enabled;
+            this.timeout = timeout;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+    }
+
+    /**
+     * A further client, whose tokens are used for the external task client of the engine at its base url.
+     */
+    public static class Registration {
+        private final String baseUrl;
+        private final String issuerUri;
+        private final String tokenUri;
+        private final String clientId;
+        private final String clientSecret;
+        private final String scope;
+
+        /**
+         * @param baseUrl the base url of the engine the tokens are used for
+         * @param issuerUri the issuer
+         * @param tokenUri the uri of the token
+         * @param clientId the preconfigured client id
+         * @param clientSecret the preconfigured secret
+         * @param scope a scope to be defined
+         */
+        public Registration(String baseUrl,
+                            String issuerUri,
+                            String tokenUri,
+                            String clientId,
+                            String clientSecret,
+                            String scope) {
+            this.baseUrl = baseUrl;
+            this.issuerUri = issuerUri;
+            this.tokenUri = tokenUri;
+            this.clientId = clientId;
+            this.clientSecret = clientSecret;
+            this.scope = scope;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public String getIssuerUri() {
+            return issuerUri;
+        }
+
+        public String getTokenUri() {
+            return tokenUri;
+        }
+
+        public String getClientId() {
+            return clientId;
+        }
+
+        public String getClientSecret() {
+            return clientSecret;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import org.camunda.bpm.client.exception.ExternalTaskClientException;
+import org.camunda.bpm.client.task.ExternalTask;
+import org.camunda.bpm.client.task.ExternalTaskService;
+
+import java.util.Map;
+
+/**
+ * org.camunda.bpm.client.task.ExternalTaskService decorator which invalidates the access token when the engine
+ * rejects a request with 401, and replays the request once with the new token. Handlers rejected at the same time
+ * share one token request. Wrap the service handed to an external task handler with it, together with the interceptor
+ * the external task client was built with: the oAuth2RequestInterceptor bean for the default client, or
+ * OAuth2ClientRegistry.interceptorFor(baseUrl) for a registration.
+ */
+public class OAuth2ExternalTaskService implements ExternalTaskService {
+
+    private final ExternalTaskService delegate;
+    private final OAuth2RequestInterceptor interceptor;
+
+    /**
+     * @param delegate the service sending the requests
+     * @param interceptor the interceptor the requests of the service are sent through
+     */
+    public OAuth2ExternalTaskService(ExternalTaskService delegate, OAuth2RequestInterceptor interceptor) {
+        this.delegate = delegate;
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public void lock(String externalTaskId, long lockDuration) {
+        replayOnUnauthorized(() -> delegate.lock(externalTaskId, lockDuration));
+    }
+
+    @Override
+    public void lock(ExternalTask externalTask, long lockDuration) {
+        replayOnUnauthorized(() -> delegate.lock(externalTask, lockDuration));
+    }
+
+    @Override
+    public void unlock(ExternalTask externalTask) {
+        replayOnUnauthorized(() -> delegate.unlock(externalTask));
+    }
+
+    @Override
+    public void complete(ExternalTask externalTask) {
+        replayOnUnauthorized(() -> delegate.complete(externalTask));
+    }
+
+    @Override
+    public void setVariables(String processInstanceId, Map<String, Object> variables) {
+        replayOnUnauthorized(() -> delegate.setVariables(processInstanceId, variables));
+    }
+
+    @Override
+    public void setVariables(ExternalTask externalTask, Map<String, Object> variables) {
+        replayOnUnauthorized(() -> delegate.setVariables(externalTask, variables));
+    }
+
+    @Override
+    public void complete(ExternalTask externalTask, Map<String, Object> variables) {
+        replayOnUnauthorized(() -> delegate.complete(externalTask, variables));
+    }
+
+    @Override
+    public void complete(ExternalTask externalTask, Map<String, Object> variables, Map<String, Object> localVariables) {
+        replayOnUnauthorized(() -> delegate.complete(externalTask, variables, localVariables));
+    }
+
+    @Override
+    public void complete(String externalTaskId, Map<String, Object> variables, Map<String, Object> localVariables) {
+        replayOnUnauthorized(() -> delegate.complete(externalTaskId, variables, localVariables));
+    }
+
+    @Override
+    public void handleFailure(ExternalTask externalTask, String errorMessage, String errorDetails, int retries, long retryTimeout) {
+        replayOnUnauthorized(() -> delegate.handleFailure(externalTask, errorMessage, errorDetails, retries, retryTimeout));
+    }
+
+    @Override
+    public void handleFailure(String externalTaskId, String errorMessage, String errorDetails, int retries, long retryTimeout) {
+        replayOnUnauthorized(() -> delegate.handleFailure(externalTaskId, errorMessage, errorDetails, retries, retryTimeout));
+    }
+
+    @Override
+    public void handleFailure(String externalTaskId, String errorMessage, String errorDetails, int retries, long retryTimeout,
+                              Map<String, Object> variables, Map<String, Object> localVariables) {
+        replayOnUnauthorized(() -> delegate.handleFailure(externalTaskId, errorMessage, errorDetails, retries, retryTimeout,
+                variables, localVariables));
+    }
+
+    @Override
+    public void handleBpmnError(ExternalTask externalTask, String errorCode) {
+        replayOnUnauthorized(() -> delegate.handleBpmnError(externalTask, errorCode));
+    }
+
+    @Override
+    public void handleBpmnError(ExternalTask externalTask, String errorCode, String errorMessage) {
+        replayOnUnauthorized(() -> delegate.handleBpmnError(externalTask, errorCode, errorMessage));
+    }
+
+    @Override
+    public void handleBpmnError(ExternalTask externalTask, String errorCode, String errorMessage, Map<String, Object> variables) {
+        replayOnUnauthorized(() -> delegate.handleBpmnError(externalTask, errorCode, errorMessage, variables));
+    }
+
+    @Override
+    public void handleBpmnError(String externalTaskId, String errorCode, String errorMessage, Map<String, Object> variables) {
+        replayOnUnauthorized(() -> delegate.handleBpmnError(externalTaskId, errorCode, errorMessage, variables));
+    }
+
+    @Override
+    public void extendLock(ExternalTask externalTask, long newDuration) {
+        replayOnUnauthorized(() -> delegate.extendLock(externalTask, newDuration));
+    }
+
+    @Override
+    public void extendLock(String externalTaskId, long newDuration) {
+        replayOnUnauthorized(() -> delegate.extendLock(externalTaskId, newDuration));
+    }
+
+    /**
+     * Sends the request, and sends it once more with a new access token if the engine rejected the current one.
+     * @param request the request to send
+     */
+    private void replayOnUnauthorized(Runnable request) {
+        try {
+            request.run();
+        } catch (ExternalTaskClientException e) {
+            // the request is sent on this thread, so the interceptor knows the token it was sent with
+            if (!OAuth2BackoffStrategy.isUnauthorized(e) || interceptor.invalidateSentAccessToken() == null) {
+                throw e;
+            }
+            request.run();
+        }
+    }
+}
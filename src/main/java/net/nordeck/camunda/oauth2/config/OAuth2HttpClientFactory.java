@@ -0,0 +1,154 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the http client used to talk to the token endpoint from the oauth2.http properties, so the default and the
+ * logbook autoconfiguration configure it the same way.
+ */
+final class OAuth2HttpClientFactory {
+
+    private OAuth2HttpClientFactory() {
+    }
+
+    /**
+     * @param http the configuration of the http client
+     * @return a builder configured with timeouts, connection pool, protocols, TLS session cache and dispatcher
+     */
+    static OkHttpClient.Builder newBuilder(OAuth2ConfigProperties.Http http) {
+        return newBuilder(http, null);
+    }
+
+    /**
+     * @param http the configuration of the http client
+     * @param clientAuthentication the configuration of the client authentication, whose key store holds the client
+     *                             certificate for tls_client_auth
+     * @return a builder configured with timeouts, connection pool, protocols, TLS, client certificate and dispatcher
+     */
+    static OkHttpClient.Builder newBuilder(OAuth2ConfigProperties.Http http,
+                                           OAuth2ConfigProperties.ClientAuthentication clientAuthentication) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectTimeout(http.getConnectTimeout())
+                .readTimeout(http.getReadTimeout())
+                .callTimeout(http.getCallTimeout())
+                .connectionPool(new ConnectionPool(http.getMaxIdleConnections(),
+                        http.getKeepAliveDuration().toMillis(), TimeUnit.MILLISECONDS))
+                .protocols(http.isHttp2() ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1));
+
+        KeyManager[] keyManagers = clientAuthentication != null
+                && clientAuthentication.getMethod() == OAuth2ConfigProperties.ClientAuthentication.Method.TLS_CLIENT_AUTH
+                ? keyManagers(clientAuthentication) : null;
+        if (keyManagers != null || http.getTlsSessionCacheSize() != null || http.getTlsSessionTimeout() != null) {
+            configureTls(builder, http, keyManagers);
+        }
+        if (http.isVirtualThreads()) {
+            builder.dispatcher(new Dispatcher(newVirtualThreadPerTaskExecutor()));
+        }
+        return builder;
+    }
+
+    /**
+     * Looked up reflectively, so the library still runs on Java 17 as long as virtual threads are not enabled.
+     * @return an executor starting a virtual thread per token request
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new OAuth2RuntimeException("oauth2.http.virtual-threads requires Java 21 or later.");
+        } catch (ReflectiveOperationException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    /**
+     * Uses an own SSLContext, so the TLS sessions to the token endpoint are cached as configured and are resumed
+     * instead of doing a full handshake when a new connection is needed, and the client certificate is presented.
+     */
+    private static void configureTls(OkHttpClient.Builder builder, OAuth2ConfigProperties.Http http,
+                                     KeyManager[] keyManagers) {
+        try {
+            X509TrustManager trustManager = defaultTrustManager();
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagers, new TrustManager[]{trustManager}, null);
+
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            if (http.getTlsSessionCacheSize() != null) {
+                sessionContext.setSessionCacheSize(http.getTlsSessionCacheSize());
+            }
+            if (http.getTlsSessionTimeout() != null) {
+                sessionContext.setSessionTimeout((int) http.getTlsSessionTimeout().toSeconds());
+            }
+            builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
+        } catch (GeneralSecurityException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads the key store once, so its keys are not read again per handshake.
+     */
+    private static KeyManager[] keyManagers(OAuth2ConfigProperties.ClientAuthentication clientAuthentication) {
+        char[] password = clientAuthentication.getKeyStorePassword() == null
+                ? new char[0] : clientAuthentication.getKeyStorePassword().toCharArray();
+        try (InputStream inputStream = Files.newInputStream(Path.of(clientAuthentication.getKeyStore()))) {
+            KeyStore keyStore = KeyStore.getInstance(clientAuthentication.getKeyStoreType());
+            keyStore.load(inputStream, password);
+            KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, password);
+            return keyManagerFactory.getKeyManagers();
+        } catch (IOException | GeneralSecurityException e) {
+            throw new OAuth2RuntimeException("Unable to load the key store " + clientAuthentication.getKeyStore() + ".", e);
+        }
+    }
+
+    private static X509TrustManager defaultTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+        return Arrays.stream(trustManagerFactory.getTrustManagers())
+                .filter(X509TrustManager.class::isInstance)
+                .map(X509TrustManager.class::cast)
+                .findFirst()
+                .orElseThrow(() -> new OAuth2RuntimeException("No X509TrustManager available."));
+    }
+
+}
@@ -18,6 +18,7 @@ package net.nordeck.camunda.oauth2.config;
 
 import net.nordeck.camunda.oauth2.OAuth2Client;
 import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.metrics.OAuth2ClientMetrics;
 import org.camunda.bpm.client.interceptor.ClientRequestContext;
 import org.camunda.bpm.client.interceptor.ClientRequestInterceptor;
 
@@ -29,22 +30,50 @@ public class OAuth2RequestInterceptor implements ClientRequestInterceptor {
 
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private final OAuth2Client oauthClient;
+    private final OAuth2ClientMetrics metrics;
+    // the external task client sends its requests on the thread calling it
+    private final ThreadLocal<AccessToken> sentAccessToken = new ThreadLocal<>();
 
     /**
-     *
+     * Records the overhead of the interceptor to the metrics of the client.
      * @param oauthClient the client which shall be provided with an interceptor
      */
     public OAuth2RequestInterceptor(OAuth2Client oauthClient) {
+        this(oauthClient, oauthClient.getMetrics());
+    }
+
+    /**
+     *
+     * @param oauthClient the client which shall be provided with an interceptor
+     * @param metrics the metrics to record the overhead of the interceptor to
+     */
+    public OAuth2RequestInterceptor(OAuth2Client oauthClient, OAuth2ClientMetrics metrics) {
         this.oauthClient = oauthClient;
+        this.metrics = metrics;
     }
 
     /**
-     * This method creates and adds an authorization header for the given context
+     * This method adds the authorization header for the given context. The header value is built once per token, so
+     * this does not allocate while the token is valid.
      * @param requestContext the context the interceptor has to work on
      */
     @Override
     public void intercept(ClientRequestContext requestContext) {
+        long startedAt = System.nanoTime();
         AccessToken accessToken = oauthClient.getAccessToken();
-        requestContext.addHeader(AUTHORIZATION_HEADER, "Bearer " + accessToken.token());
+        requestContext.addHeader(AUTHORIZATION_HEADER, accessToken.authorizationHeader());
+        sentAccessToken.set(accessToken);
+        metrics.recordInterceptorOverhead(System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Replaces the access token the current thread last sent a request with, after the engine rejected that request
+     * with 401. Other threads may have sent requests with newer tokens meanwhile, those are not thrown away.
+     * @return the access token to replay the rejected request with, null if the current thread has not sent a request
+     * through this interceptor
+     */
+    public AccessToken invalidateSentAccessToken() {
+        AccessToken rejected = sentAccessToken.get();
+        return rejected == null ? null : oauthClient.invalidate(rejected);
     }
 }
@@ -17,29 +17,78 @@
 package net.nordeck.camunda.oauth2.config;
 
 import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.BodyFilters;
+import org.zalando.logbook.DefaultHttpLogFormatter;
+import org.zalando.logbook.DefaultHttpLogWriter;
+import org.zalando.logbook.DefaultSink;
+import org.zalando.logbook.DefaultStrategy;
+import org.zalando.logbook.HeaderFilters;
 import org.zalando.logbook.Logbook;
+import org.zalando.logbook.Sink;
+import org.zalando.logbook.WithoutBodyStrategy;
+import org.zalando.logbook.json.JsonBodyFilters;
 import org.zalando.logbook.okhttp.LogbookInterceptor;
 
+import java.util.Set;
+
 /**
- * When LogbookInterceptor is present build an OkHttpclient and add the interceptor for logging purposes.
+ * When LogbookInterceptor and the JsonBodyFilters of logbook-json are present and oauth2.logbook.enabled is set, build
+ * an OkHttpclient and add the interceptor for logging purposes. Only headers are logged unless oauth2.logbook.log-bodies
+ * is set, so the token requests are not buffered, and secrets and tokens are redacted either way.
  */
 @Configuration
-@ConditionalOnClass(LogbookInterceptor.class)
+@ConditionalOnClass({LogbookInterceptor.class, JsonBodyFilters.class})
+@ConditionalOnProperty(prefix = "oauth2.logbook", name = "enabled", havingValue = "true")
+@AutoConfigureBefore(DefaultOkHttpAutoconfiguration.class)
+@EnableConfigurationProperties(OAuth2ConfigProperties.class)
 public class OkHttpLogbookAutoconfiguration {
 
+    private static final String REDACTED = "XXX";
+
     /**
-     * This method provides an instance of okhttp3.OkHttpClient, which is configured to use the logbook interceptor
-     * @param logbook the instance of org.zalando.logbook.Logbook which shall be used to log your messages
+     * This method provides an instance of okhttp3.OkHttpClient used to talk to the token endpoint, which is configured
+     * to use the logbook interceptor
+     * @param sink the org.zalando.logbook.Sink to write the logs to, a default one if there is none
+     * @param oAuth2ConfigProperties the properties which configure the http client and what is logged
      * @return a configured instance of okhttp3.OkHttpClient
      */
-    @Bean
-    public OkHttpClient httpClient(Logbook logbook) {
-        return new OkHttpClient.Builder()
+    @Bean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME)
+    @ConditionalOnMissingBean(name = OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME)
+    public OkHttpClient oAuth2HttpClient(ObjectProvider<Sink> sink, OAuth2ConfigProperties oAuth2ConfigProperties) {
+        Logbook logbook = tokenEndpointLogbook(
+                sink.getIfAvailable(() -> new DefaultSink(new DefaultHttpLogFormatter(), new DefaultHttpLogWriter())),
+                oAuth2ConfigProperties.getLogbook());
+        return OAuth2HttpClientFactory.newBuilder(oAuth2ConfigProperties.getHttp(),
+                oAuth2ConfigProperties.getClientAuthentication())
                 .addNetworkInterceptor(new LogbookInterceptor(logbook))
                 .build();
     }
 
+    /**
+     * The Logbook of the token endpoint is separate from the one of the application, so its strategy and filters
+     * apply to the token requests only.
+     * @param sink the sink to write the logs to
+     * @param properties the properties which configure what is logged
+     * @return a Logbook which redacts the credentials and tokens, and skips the bodies unless configured otherwise
+     */
+    static Logbook tokenEndpointLogbook(Sink sink, OAuth2ConfigProperties.Logbook properties) {
+        return Logbook.builder()
+                .strategy(properties.isLogBodies() ? new DefaultStrategy() : new WithoutBodyStrategy())
+                .headerFilter(HeaderFilters.authorization())
+                .bodyFilter(BodyFilters.replaceFormUrlEncodedProperty(
+                        Set.of("client_secret", "client_assertion", "refresh_token"), REDACTED))
+                .bodyFilter(JsonBodyFilters.replaceJsonStringProperty(
+                        Set.of("access_token", "refresh_token", "id_token"), REDACTED))
+                .sink(sink)
+                .build();
+    }
+
 }
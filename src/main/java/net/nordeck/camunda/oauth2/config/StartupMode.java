@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+/**
+ * Defines when net.nordeck.camunda.oauth2.OAuth2Client fetches its first tokens.
+ */
+public enum StartupMode {
+    /**
+     * Fetch the tokens while creating the client, failing the startup if the token endpoint is not available.
+     */
+    EAGER,
+    /**
+     * Fetch the tokens on first use.
+     */
+    LAZY,
+    /**
+     * Start fetching the tokens in the background while creating the client, without waiting for them.
+     */
+    BACKGROUND
+}
@@ -16,13 +16,15 @@
  */
 package net.nordeck.camunda.oauth2.config;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.interfaces.DecodedJWT;
 import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.dto.RefreshToken;
 import net.nordeck.camunda.oauth2.time.Clock;
 
+import java.time.Duration;
+
 /**
- * Validator to provide a simple validation for an access token.
+ * Validator to provide a simple validation for access and refresh tokens. The clock skew is already compensated in the
+ * expiry of the tokens, when the OAuth2Client determines it.
  */
 public class TokenValidator {
 
@@ -33,12 +35,31 @@ public class TokenValidator {
     }
 
     /**
-     * This method checks if a provided access token is expired
+     * This method checks if a provided access token is expired. The token itself is not decoded again, the expiry
+     * decoded when fetching the token is used instead.
      * @param accessToken the token which should get validated
-     * @return true if the getExpiresAt field comes before now(), meaning if it is expired
+     * @return true if the expiresAt field comes before now(), meaning if it is expired
      */
     public boolean isExpired(AccessToken accessToken) {
-        DecodedJWT decodedJWT = JWT.decode(accessToken.token());
-        return decodedJWT.getExpiresAt().before(clock.now());
+        return accessToken.expiresAt() < clock.millis();
+    }
+
+    /**
+     * This method checks if a provided access token expires within the given margin, so it should be refreshed.
+     * @param accessToken the token which should get validated
+     * @param margin how long before its expiry the token is considered expired
+     * @return true if the expiresAt field minus the margin comes before now()
+     */
+    public boolean isExpired(AccessToken accessToken, Duration margin) {
+        return accessToken.expiresAt() - margin.toMillis() < clock.millis();
+    }
+
+    /**
+     * This method checks if a provided refresh token is expired, so it is not worth trying to use it.
+     * @param refreshToken the token which should get validated
+     * @return true if the expiresAt field comes before now(), meaning if it is expired
+     */
+    public boolean isRefreshTokenExpired(RefreshToken refreshToken) {
+        return refreshToken.expiresAt() < clock.millis();
     }
 }
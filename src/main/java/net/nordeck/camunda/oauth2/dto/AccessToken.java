@@ -16,16 +16,27 @@
  */
 package net.nordeck.camunda.oauth2.dto;
 
-import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
-
 /**
  * Container class for access tokens.
  * @param token
+ * @param expiresAt the expiry of the token in milliseconds since epoch, decoded once when the token is fetched
+ * @param authorizationHeader the value of the Authorization header carrying the token, built once per token
  */
-public record AccessToken(String token) {
+public record AccessToken(String token, long expiresAt, String authorizationHeader) {
+
+    /**
+     * @param token the token
+     * @param expiresAt the expiry of the token in milliseconds since epoch
+     */
+    public AccessToken(String token, long expiresAt) {
+        this(token, expiresAt, "Bearer " + token);
+    }
 
+    /**
+     * @return the expiry and the redacted token, so it is safe to log
+     */
     @Override
     public String toString() {
-        return new ReflectionToStringBuilder(this).toString();
+        return "AccessToken[token=" + Redaction.redact(token) + ", expiresAt=" + expiresAt + "]";
     }
 }
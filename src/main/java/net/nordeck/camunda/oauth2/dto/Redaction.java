@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.dto;
+
+/**
+ * Keeps tokens out of logs, while leaving enough to tell them apart.
+ */
+final class Redaction {
+
+    private static final int MIN_LENGTH_TO_SHOW_PREFIX = 16;
+
+    private static final int PREFIX_LENGTH = 4;
+
+    private Redaction() {
+    }
+
+    /**
+     * @param token a token, may be null
+     * @return the first characters and the length of the token, only the length if it is short
+     */
+    static String redact(String token) {
+        if (token == null) {
+            return "null";
+        }
+        String prefix = token.length() < MIN_LENGTH_TO_SHOW_PREFIX ? "" : token.substring(0, PREFIX_LENGTH);
+        return prefix + "...(" + token.length() + " chars)";
+    }
+}
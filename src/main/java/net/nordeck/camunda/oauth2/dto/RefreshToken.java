@@ -16,17 +16,19 @@
  */
 package net.nordeck.camunda.oauth2.dto;
 
-import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
-
 /**
  * Container class for refresh tokens.
  * @param token
+ * @param expiresAt the expiry of the token in milliseconds since epoch, Long.MAX_VALUE if unknown
  */
-public record RefreshToken(String token) {
+public record RefreshToken(String token, long expiresAt) {
 
+    /**
+     * @return the expiry and the redacted token, so it is safe to log
+     */
     @Override
     public String toString() {
-        return new ReflectionToStringBuilder(this).toString();
+        return "RefreshToken[token=" + Redaction.redact(token) + ", expiresAt=" + expiresAt + "]";
     }
 
 }
@@ -0,0 +1,38 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.dto;
+
+/**
+ * The fields of a token response we make use of.
+ * @param accessToken the access_token
+ * @param refreshToken the refresh_token, null if none was issued
+ * @param expiresIn the lifetime of the access token in seconds, null if not provided
+ * @param refreshExpiresIn the lifetime of the refresh token in seconds, null if not provided
+ * @param tokenType the token_type, null if not provided
+ */
+public record TokenResponse(String accessToken, String refreshToken, Long expiresIn, Long refreshExpiresIn,
+                            String tokenType) {
+
+    /**
+     * @return the lifetimes and the redacted tokens, so it is safe to log
+     */
+    @Override
+    public String toString() {
+        return "TokenResponse[accessToken=" + Redaction.redact(accessToken) + ", refreshToken=" + Redaction.redact(refreshToken)
+                + ", expiresIn=" + expiresIn + ", refreshExpiresIn=" + refreshExpiresIn + ", tokenType=" + tokenType + "]";
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.dto;
+
+import net.nordeck.camunda.oauth2.CircuitBreaker;
+
+import java.time.Duration;
+
+/**
+ * Snapshot of the cached tokens of an OAuth2Client, read without fetching any.
+ * @param accessToken the cached access token, null if none was obtained yet
+ * @param valid whether the access token has not expired yet
+ * @param obtainedAt when the access token was obtained in milliseconds since epoch, 0 if none was obtained yet
+ * @param refreshLatency how long obtaining the access token took, null if none was obtained yet
+ * @param lastFailure why the last attempt to obtain tokens failed, null if it succeeded or none was made yet
+ * @param circuitBreakerState the state of the circuit breaker guarding the token endpoint
+ */
+public record TokenState(AccessToken accessToken, boolean valid, long obtainedAt, Duration refreshLatency,
+                         Throwable lastFailure, CircuitBreaker.State circuitBreakerState) {
+}
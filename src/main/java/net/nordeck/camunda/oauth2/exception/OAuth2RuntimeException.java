@@ -24,4 +24,8 @@ public class OAuth2RuntimeException extends RuntimeException {
     public OAuth2RuntimeException(String s) {
         super(s);
     }
+
+    public OAuth2RuntimeException(String s, Throwable t) {
+        super(s, t);
+    }
 }
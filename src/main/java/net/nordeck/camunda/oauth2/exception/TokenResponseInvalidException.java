@@ -20,4 +20,8 @@ public class TokenResponseInvalidException extends OAuth2RuntimeException {
     public TokenResponseInvalidException(String errorMessage, String responseCode, String message) {
         super(errorMessage + "(" + responseCode + "): " + message);
     }
+
+    public TokenResponseInvalidException(String message) {
+        super(message);
+    }
 }
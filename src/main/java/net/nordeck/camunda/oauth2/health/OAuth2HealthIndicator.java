@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.health;
+
+import net.nordeck.camunda.oauth2.CircuitBreaker;
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.OAuth2ClientRegistry;
+import net.nordeck.camunda.oauth2.dto.TokenState;
+import net.nordeck.camunda.oauth2.time.Clock;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Reports whether all clients are able to obtain tokens, so readiness can be gated on it. A client is down if the
+ * circuit breaker of its token endpoint is open, or if obtaining its tokens failed and it holds no valid access token.
+ * An access token which just expired is replaced on its next use, which does not make the client down. Only the cached
+ * tokens are inspected, a health probe never causes a token request.
+ */
+public class OAuth2HealthIndicator implements HealthIndicator {
+
+    static final String DEFAULT_CLIENT = OAuth2ClientRegistry.DEFAULT_CLIENT_NAME;
+
+    private final OAuth2ClientRegistry oAuth2ClientRegistry;
+
+    private final Clock clock;
+
+    /**
+     * @param oAuth2ClientRegistry the registry of the clients to report on
+     * @param clock the clock to calculate the age and the time to expiry of the access tokens with
+     */
+    public OAuth2HealthIndicator(OAuth2ClientRegistry oAuth2ClientRegistry, Clock clock) {
+        this.oAuth2ClientRegistry = oAuth2ClientRegistry;
+        this.clock = clock;
+    }
+
+    @Override
+    public Health health() {
+        Map<String, OAuth2Client> clients = new LinkedHashMap<>();
+        clients.put(DEFAULT_CLIENT, oAuth2ClientRegistry.getDefaultClient());
+        clients.putAll(oAuth2ClientRegistry.getRegistrations());
+
+        long now = clock.millis();
+        boolean up = true;
+        Health.Builder builder = new Health.Builder();
+        for (Map.Entry<String, OAuth2Client> client : clients.entrySet()) {
+            TokenState tokenState = client.getValue().getTokenState();
+            up &= !isDown(tokenState);
+            builder.withDetail(client.getKey(), details(tokenState, now));
+        }
+        return (up ? builder.up() : builder.down()).build();
+    }
+
+    private static boolean isDown(TokenState tokenState) {
+        return tokenState.circuitBreakerState() == CircuitBreaker.State.OPEN
+                || tokenState.lastFailure() != null && !tokenState.valid();
+    }
+
+    private static Map<String, Object> details(TokenState tokenState, long now) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("valid", tokenState.valid());
+        details.put("circuitBreaker", tokenState.circuitBreakerState());
+        if (tokenState.lastFailure() != null) {
+            Throwable lastFailure = tokenState.lastFailure();
+            if (lastFailure instanceof CompletionException && lastFailure.getCause() != null) {
+                lastFailure = lastFailure.getCause();
+            }
+            details.put("lastFailure", lastFailure.getClass().getSimpleName() + ": " + lastFailure.getMessage());
+        }
+        if (tokenState.accessToken() != null) {
+            details.put("tokenAgeMillis", now - tokenState.obtainedAt());
+            details.put("expiresInMillis", tokenState.accessToken().expiresAt() - now);
+            details.put("lastRefreshLatencyMillis", tokenState.refreshLatency().toMillis());
+        }
+        return details;
+    }
+}
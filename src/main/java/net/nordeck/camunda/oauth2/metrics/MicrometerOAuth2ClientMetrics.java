@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.nordeck.camunda.oauth2.OAuth2ClientRegistry;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.time.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the metrics of one OAuth2Client to a Micrometer MeterRegistry, tagged with the name of the client.
+ */
+public class MicrometerOAuth2ClientMetrics implements OAuth2ClientMetrics {
+
+    static final String TOKEN_REQUESTS = "oauth2.token.requests";
+    static final String TOKEN_LOOKUPS = "oauth2.token.lookups";
+    static final String TOKEN_EXPIRY = "oauth2.token.expiry";
+    static final String INTERCEPTOR_OVERHEAD = "oauth2.interceptor.overhead";
+    static final String CLIENT_TAG = "client";
+
+    private final MeterRegistry meterRegistry;
+    private final String clientName;
+    private final Counter cachedLookups;
+    private final Counter fetchedLookups;
+    private final Timer interceptorOverhead;
+
+    private volatile long expiresAt = Long.MIN_VALUE;
+
+    /**
+     * Records the metrics of the client configured by oauth2.*.
+     * @param meterRegistry the registry to register the meters at
+     * @param clock the clock to calculate the time until the current token expires with
+     */
+    public MicrometerOAuth2ClientMetrics(MeterRegistry meterRegistry, Clock clock) {
+        this(meterRegistry, clock, OAuth2ClientRegistry.DEFAULT_CLIENT_NAME);
+    }
+
+    /**
+     * @param meterRegistry the registry to register the meters at
+     * @param clock the clock to calculate the time until the current token expires with
+     * @param clientName the name of the registration of the client, to tag the meters with
+     */
+    public MicrometerOAuth2ClientMetrics(MeterRegistry meterRegistry, Clock clock, String clientName) {
+        this.meterRegistry = meterRegistry;
+        this.clientName = clientName;
+        this.cachedLookups = Counter.builder(TOKEN_LOOKUPS)
+                .description("Access token lookups, served from the cached token or fetched")
+                .tag(CLIENT_TAG, clientName)
+                .tag("source", "cached")
+                .register(meterRegistry);
+        this.fetchedLookups = Counter.builder(TOKEN_LOOKUPS)
+                .description("Access token lookups, served from the cached token or fetched")
+                .tag(CLIENT_TAG, clientName)
+                .tag("source", "fetched")
+                .register(meterRegistry);
+        this.interceptorOverhead = Timer.builder(INTERCEPTOR_OVERHEAD)
+                .description("Time the OAuth2RequestInterceptor adds to requests of the external task client")
+                .tag(CLIENT_TAG, clientName)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder(TOKEN_EXPIRY, this, metrics -> metrics.secondsUntilExpiry(clock))
+                .description("Seconds until the current access token expires")
+                .tag(CLIENT_TAG, clientName)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void recordTokenRequest(String grantType, String outcome, long durationNanos) {
+        Timer.builder(TOKEN_REQUESTS)
+                .description("Round trips to the token endpoint")
+                .tag(CLIENT_TAG, clientName)
+                .tag("grant_type", grantType)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordTokenLookup(boolean cached) {
+        (cached ? cachedLookups : fetchedLookups).increment();
+    }
+
+    @Override
+    public void recordTokenFetched(AccessToken accessToken) {
+        expiresAt = accessToken.expiresAt();
+    }
+
+    @Override
+    public void recordInterceptorOverhead(long durationNanos) {
+        interceptorOverhead.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private double secondsUntilExpiry(Clock clock) {
+        long current = expiresAt;
+        if (current == Long.MIN_VALUE) {
+            return Double.NaN;
+        }
+        return (current - clock.millis()) / 1000.0;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.metrics;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+
+/**
+ * Callbacks of the OAuth2Client and the OAuth2RequestInterceptor to record metrics. All methods are called on the
+ * request path, so implementations must be cheap and must not throw.
+ */
+public interface OAuth2ClientMetrics {
+
+    /**
+     * Does not record anything, used when Micrometer is not available.
+     */
+    OAuth2ClientMetrics NOOP = new OAuth2ClientMetrics() {
+    };
+
+    String OUTCOME_SUCCESS = "success";
+    String OUTCOME_ERROR = "error";
+    String OUTCOME_IO_ERROR = "io_error";
+
+    /**
+     * Records a round trip to the token endpoint.
+     * @param grantType the grant type of the token request
+     * @param outcome one of OUTCOME_SUCCESS, OUTCOME_ERROR if the token endpoint did not return valid tokens or
+     *                OUTCOME_IO_ERROR if it could not be reached
+     * @param durationNanos the duration of the round trip in nanoseconds
+     */
+    default void recordTokenRequest(String grantType, String outcome, long durationNanos) {
+    }
+
+    /**
+     * Records that an access token was requested.
+     * @param cached true if it was served from the cached token, false if it had to be fetched
+     */
+    default void recordTokenLookup(boolean cached) {
+    }
+
+    /**
+     * Records that new tokens were fetched.
+     * @param accessToken the fetched access token
+     */
+    default void recordTokenFetched(AccessToken accessToken) {
+    }
+
+    /**
+     * Records the time the OAuth2RequestInterceptor added to a request of the external task client.
+     * @param durationNanos the duration in nanoseconds
+     */
+    default void recordInterceptorOverhead(long durationNanos) {
+    }
+}
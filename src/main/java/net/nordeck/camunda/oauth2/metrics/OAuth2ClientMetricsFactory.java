@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.metrics;
+
+/**
+ * Creates the OAuth2ClientMetrics of each OAuth2Client, so the metrics of the clients are told apart.
+ */
+public interface OAuth2ClientMetricsFactory {
+
+    /**
+     * Creates no metrics, used when Micrometer is not available.
+     */
+    OAuth2ClientMetricsFactory NOOP = clientName -> OAuth2ClientMetrics.NOOP;
+
+    /**
+     * @param clientName the name of the registration of the client, OAuth2ClientRegistry.DEFAULT_CLIENT_NAME for the
+     *                   client configured by oauth2.*
+     * @return the metrics of the client
+     */
+    OAuth2ClientMetrics create(String clientName);
+}
@@ -0,0 +1,48 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.reactive;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * org.springframework.web.reactive.function.client.ExchangeFilterFunction implementation to set the Authorization
+ * properly on requests of a WebClient, without blocking.
+ */
+public class OAuth2ExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private final ReactiveOAuth2TokenSource tokenSource;
+
+    /**
+     * @param tokenSource the source of the access tokens
+     */
+    public OAuth2ExchangeFilterFunction(ReactiveOAuth2TokenSource tokenSource) {
+        this.tokenSource = tokenSource;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return tokenSource.getAccessToken()
+                .flatMap(accessToken -> next.exchange(ClientRequest.from(request)
+                        .headers(headers -> headers.set(HttpHeaders.AUTHORIZATION, accessToken.authorizationHeader()))
+                        .build()));
+    }
+}
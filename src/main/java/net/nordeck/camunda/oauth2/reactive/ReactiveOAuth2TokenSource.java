@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.reactive;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import reactor.core.publisher.Mono;
+
+/**
+ * Provides the access tokens of an OAuth2Client to reactive callers. The tokens are the ones the blocking interceptor
+ * uses, and refreshes are shared with it, so subscribing never blocks while the tokens are refreshed.
+ */
+public class ReactiveOAuth2TokenSource {
+
+    private final OAuth2Client oAuth2Client;
+
+    /**
+     * @param oAuth2Client the client whose tokens are provided
+     */
+    public ReactiveOAuth2TokenSource(OAuth2Client oAuth2Client) {
+        this.oAuth2Client = oAuth2Client;
+    }
+
+    /**
+     * Each subscription looks up the current access token, which completes immediately while it is valid. Otherwise
+     * it waits for the refresh in flight, or starts one if there is none.
+     * @return a Mono of the actual access token
+     */
+    public Mono<AccessToken> getAccessToken() {
+        return Mono.fromFuture(oAuth2Client::getAccessTokenAsync);
+    }
+
+    /**
+     * @param staleToken the access token which shall be replaced
+     * @return a Mono of the refreshed access token, or of the current one if it was already refreshed
+     */
+    public Mono<AccessToken> refresh(AccessToken staleToken) {
+        return Mono.fromFuture(() -> oAuth2Client.refreshAsync(staleToken));
+    }
+}
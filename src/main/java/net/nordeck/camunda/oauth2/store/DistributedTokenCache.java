@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+
+import java.time.Duration;
+
+/**
+ * A cache of tokens shared by all nodes of a cluster. A node has to hold the lease of a key to fetch its tokens, so
+ * only one node fetches at a time while the others wait for its result. Leases expire, so a node failing while holding
+ * one does not keep the others from fetching. Implementations may block, they are called on the executor of the
+ * DistributedTokenStore.
+ */
+public interface DistributedTokenCache {
+
+    /**
+     * @param key identifies the tokens
+     * @return the cached tokens, null if there are none
+     */
+    TokenPair get(String key);
+
+    /**
+     * Acquires the lease of the key, if no other node holds it.
+     * @param key identifies the tokens
+     * @param owner identifies the node
+     * @param duration how long the lease is held unless released
+     * @return true if the node holds the lease now
+     */
+    boolean tryAcquireLease(String key, String owner, Duration duration);
+
+    /**
+     * Caches the tokens and releases the lease of the key, if the node holds it.
+     * @param key identifies the tokens
+     * @param owner identifies the node
+     * @param tokens the tokens the node fetched
+     * @return false if the node lost the lease to another node, the tokens are not cached then
+     */
+    boolean put(String key, String owner, TokenPair tokens);
+
+    /**
+     * Releases the lease of the key without caching tokens, if the node holds it.
+     * @param key identifies the tokens
+     * @param owner identifies the node
+     */
+    void releaseLease(String key, String owner);
+}
@@ -0,0 +1,155 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Stores the tokens in a DistributedTokenCache, so the nodes of a cluster share them. The node holding the lease of
+ * the tokens fetches them, the others poll the cache until its tokens arrive or the lease expires. If the cache is
+ * unavailable, the tokens are fetched without sharing them. The cache is only called on the executor of the store, so
+ * callers and the callbacks of the token requests are not blocked by it.
+ */
+public class DistributedTokenStore implements TokenStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedTokenStore.class);
+
+    private static final Executor CACHE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "oauth2-token-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DistributedTokenCache cache;
+
+    private final String key;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final Duration leaseDuration;
+
+    private final Duration pollInterval;
+
+    private final Executor executor;
+
+    /**
+     * Calls the cache on threads shared by all stores, which are started as needed.
+     * @param cache the cache shared by the nodes
+     * @param key identifies the tokens
+     * @param leaseDuration how long a node may fetch before another one takes over
+     * @param pollInterval how often a waiting node checks for the tokens of the fetching node
+     */
+    public DistributedTokenStore(DistributedTokenCache cache, String key, Duration leaseDuration, Duration pollInterval) {
+        this(cache, key, leaseDuration, pollInterval, CACHE_EXECUTOR);
+    }
+
+    /**
+     * @param cache the cache shared by the nodes
+     * @param key identifies the tokens
+     * @param leaseDuration how long a node may fetch before another one takes over
+     * @param pollInterval how often a waiting node checks for the tokens of the fetching node
+     * @param executor the executor to call the cache on
+     */
+    public DistributedTokenStore(DistributedTokenCache cache, String key, Duration leaseDuration, Duration pollInterval,
+                                 Executor executor) {
+        this.cache = cache;
+        this.key = Keys.hash(key);
+        this.leaseDuration = leaseDuration;
+        this.pollInterval = pollInterval;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<TokenPair> getOrFetch(Predicate<TokenPair> usable, Function<TokenPair, CompletableFuture<TokenPair>> fetch) {
+        CompletableFuture<TokenPair> result = new CompletableFuture<>();
+        executor.execute(() -> attempt(usable, fetch, result));
+        return result;
+    }
+
+    /**
+     * Uses the cached tokens if they may be used, fetches them if the lease is acquired, and checks again after the
+     * poll interval otherwise.
+     */
+    private void attempt(Predicate<TokenPair> usable, Function<TokenPair, CompletableFuture<TokenPair>> fetch,
+                         CompletableFuture<TokenPair> result) {
+        TokenPair cached;
+        try {
+            cached = cache.get(key);
+            if (cached != null && usable.test(cached)) {
+                result.complete(cached);
+                return;
+            }
+            if (!cache.tryAcquireLease(key, owner, leaseDuration)) {
+                LOGGER.debug("Another node is fetching the tokens, checking again in {}.", pollInterval);
+                CompletableFuture.delayedExecutor(pollInterval.toMillis(), TimeUnit.MILLISECONDS, executor)
+                        .execute(() -> attempt(usable, fetch, result));
+                return;
+            }
+            // the previous lease holder may have cached its tokens just before we acquired the lease
+            cached = cache.get(key);
+            if (cached != null && usable.test(cached)) {
+                cache.releaseLease(key, owner);
+                result.complete(cached);
+                return;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("The distributed token cache is unavailable, fetching tokens without sharing them.", e);
+            complete(fetch.apply(null), result);
+            return;
+        }
+
+        CompletableFuture<TokenPair> fetched;
+        try {
+            fetched = fetch.apply(cached);
+        } catch (RuntimeException e) {
+            fetched = CompletableFuture.failedFuture(e);
+        }
+        complete(fetched.whenCompleteAsync((tokens, e) -> {
+            try {
+                if (tokens == null) {
+                    cache.releaseLease(key, owner);
+                } else if (!cache.put(key, owner, tokens)) {
+                    LOGGER.warn("The lease of the tokens expired while fetching them and another node took it over, "
+                            + "not sharing the fetched tokens.");
+                }
+            } catch (RuntimeException cacheFailure) {
+                LOGGER.warn("Unable to share the tokens through the distributed token cache.", cacheFailure);
+            }
+        }, executor), result);
+    }
+
+    private static void complete(CompletableFuture<TokenPair> source, CompletableFuture<TokenPair> result) {
+        source.whenComplete((tokens, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+            } else {
+                result.complete(tokens);
+            }
+        });
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.dto.RefreshToken;
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Stores the tokens in a file, so they survive restarts and are shared by all processes on a host using the same
+ * directory. A lock on a sibling lock file makes sure only one process fetches at a time, while the others wait for
+ * the lock and then use the stored tokens. The calling thread only opens the lock file. The lock is awaited on a
+ * thread of the AsynchronousFileChannel, which may block it, and the token file is read on that thread and written on
+ * the thread completing the fetch. The tokens are written to a temporary file which is then atomically moved over the
+ * token file, so readers never see a partially written file. Both files are only readable by their owner.
+ */
+public class FileTokenStore implements TokenStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTokenStore.class);
+
+    private static final String ACCESS_TOKEN = "access_token";
+    private static final String ACCESS_TOKEN_EXPIRES_AT = "access_token_expires_at";
+    private static final String REFRESH_TOKEN = "refresh_token";
+    private static final String REFRESH_TOKEN_EXPIRES_AT = "refresh_token_expires_at";
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final Path tokenFile;
+
+    private final Path lockFile;
+
+    /**
+     * @param directory the directory to store the tokens in, created if it does not exist
+     * @param key identifies the tokens, the file name is derived from it
+     */
+    public FileTokenStore(Path directory, String key) {
+        String name = Keys.hash(key);
+        this.tokenFile = directory.resolve(name + ".tokens");
+        this.lockFile = directory.resolve(name + ".lock");
+        try {
+            if (POSIX) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        } catch (IOException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TokenPair> getOrFetch(Predicate<TokenPair> usable, Function<TokenPair, CompletableFuture<TokenPair>> fetch) {
+        CompletableFuture<TokenPair> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        try {
+            channel = AsynchronousFileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to open {}, fetching tokens without sharing them.", lockFile, e);
+            return fetch.apply(null);
+        }
+        try {
+            channel.lock(null, new CompletionHandler<FileLock, Void>() {
+                @Override
+                public void completed(FileLock lock, Void attachment) {
+                    getOrFetchLocked(usable, fetch).whenComplete((tokens, e) -> {
+                        close(channel);
+                        if (e != null) {
+                            result.completeExceptionally(e);
+                        } else {
+                            result.complete(tokens);
+                        }
+                    });
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    close(channel);
+                    LOGGER.warn("Unable to lock {}, fetching tokens without sharing them.", lockFile, e);
+                    fetch.apply(null).whenComplete((tokens, fetchFailure) -> {
+                        if (fetchFailure != null) {
+                            result.completeExceptionally(fetchFailure);
+                        } else {
+                            result.complete(tokens);
+                        }
+                    });
+                }
+            });
+        } catch (OverlappingFileLockException e) {
+            // another store of this process holds the lock for the same tokens
+            close(channel);
+            return fetch.apply(null);
+        }
+        return result;
+    }
+
+    private CompletableFuture<TokenPair> getOrFetchLocked(Predicate<TokenPair> usable, Function<TokenPair, CompletableFuture<TokenPair>> fetch) {
+        TokenPair stored;
+        try {
+            stored = read();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (stored != null && usable.test(stored)) {
+            LOGGER.debug("Using the tokens stored in {}", tokenFile);
+            return CompletableFuture.completedFuture(stored);
+        }
+        CompletableFuture<TokenPair> fetched;
+        try {
+            fetched = fetch.apply(stored);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return fetched.thenApply(tokens -> {
+            write(tokens);
+            return tokens;
+        });
+    }
+
+    /**
+     * @return the stored tokens, null if there are none or they cannot be read
+     */
+    TokenPair read() {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(tokenFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            String accessToken = properties.getProperty(ACCESS_TOKEN);
+            if (accessToken == null) {
+                return null;
+            }
+            return new TokenPair(
+                    new AccessToken(accessToken, Long.parseLong(properties.getProperty(ACCESS_TOKEN_EXPIRES_AT))),
+                    new RefreshToken(properties.getProperty(REFRESH_TOKEN),
+                            Long.parseLong(properties.getProperty(REFRESH_TOKEN_EXPIRES_AT))));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to read the tokens stored in {}, fetching new ones.", tokenFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the tokens to a temporary file and atomically replaces the token file with it. Failing to store the
+     * tokens is not fatal, they are just not shared.
+     */
+    void write(TokenPair tokens) {
+        Properties properties = new Properties();
+        properties.setProperty(ACCESS_TOKEN, tokens.accessToken().token());
+        properties.setProperty(ACCESS_TOKEN_EXPIRES_AT, String.valueOf(tokens.accessToken().expiresAt()));
+        if (tokens.refreshToken().token() != null) {
+            properties.setProperty(REFRESH_TOKEN, tokens.refreshToken().token());
+        }
+        properties.setProperty(REFRESH_TOKEN_EXPIRES_AT, String.valueOf(tokens.refreshToken().expiresAt()));
+
+        Path temporaryFile = null;
+        try {
+            FileAttribute<?>[] attributes = POSIX
+                    ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))}
+                    : new FileAttribute<?>[0];
+            temporaryFile = Files.createTempFile(tokenFile.getParent(), tokenFile.getFileName().toString(), ".tmp", attributes);
+            try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            Files.move(temporaryFile, tokenFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the tokens in {}.", tokenFile, e);
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                    // nothing left to do
+                }
+            }
+        }
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            // releases the lock
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to release the token file lock.", e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the tokens in memory, so they are only used by the process which fetched them.
+ */
+public class InMemoryTokenStore implements TokenStore {
+
+    private volatile TokenPair tokens;
+
+    @Override
+    public CompletableFuture<TokenPair> getOrFetch(Predicate<TokenPair> usable, Function<TokenPair, CompletableFuture<TokenPair>> fetch) {
+        TokenPair stored = tokens;
+        if (stored != null && usable.test(stored)) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        return fetch.apply(stored).thenApply(fetched -> {
+            tokens = fetched;
+            return fetched;
+        });
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.dto.RefreshToken;
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import net.nordeck.camunda.oauth2.time.Clock;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+
+/**
+ * A DistributedTokenCache in a table shared by all nodes, one row per key. Leases are acquired by a conditional update,
+ * so the database decides which node holds them, and tokens are only written by the node holding the lease. The leases
+ * are dated by the clocks of the nodes, which have to be kept in sync, e.g. by NTP. A node takes over the lease of another
+ * one only after it expired by the tolerated clock skew, so a node whose clock is ahead does not take over a lease still
+ * held. All methods block on the database. The table has to be created up front:
+ * <pre>
+ * CREATE TABLE oauth2_token_cache (
+ *     cache_key                VARCHAR(64) PRIMARY KEY,
+ *     access_token             VARCHAR(8000),
+ *     access_token_expires_at  BIGINT,
+ *     refresh_token            VARCHAR(8000),
+ *     refresh_token_expires_at BIGINT,
+ *     lease_owner              VARCHAR(64),
+ *     lease_expires_at         BIGINT
+ * )
+ * </pre>
+ */
+public class JdbcDistributedTokenCache implements DistributedTokenCache {
+
+    private static final String SQL_STATE_INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final DataSource dataSource;
+
+    private final Clock clock;
+
+    private final long clockSkew;
+
+    private final String selectTokens;
+
+    private final String updateLease;
+
+    private final String insertLease;
+
+    private final String updateTokens;
+
+    private final String deleteLease;
+
+    /**
+     * @param dataSource the data source of the shared database
+     * @param table the name of the table
+     * @param clock the clock to expire the leases with
+     * @param clockSkew the tolerated difference between the clocks of the nodes
+     */
+    public JdbcDistributedTokenCache(DataSource dataSource, String table, Clock clock, Duration clockSkew) {
+        this.dataSource = dataSource;
+        this.clock = clock;
+        this.clockSkew = clockSkew.toMillis();
+        this.selectTokens = "SELECT access_token, access_token_expires_at, refresh_token, refresh_token_expires_at FROM "
+                + table + " WHERE cache_key = ?";
+        this.updateLease = "UPDATE " + table + " SET lease_owner = ?, lease_expires_at = ?"
+                + " WHERE cache_key = ? AND (lease_owner IS NULL OR lease_owner = ? OR lease_expires_at < ?)";
+        this.insertLease = "INSERT INTO " + table + " (cache_key, lease_owner, lease_expires_at) VALUES (?, ?, ?)";
+        this.updateTokens = "UPDATE " + table + " SET access_token = ?, access_token_expires_at = ?, refresh_token = ?,"
+                + " refresh_token_expires_at = ?, lease_owner = NULL, lease_expires_at = NULL"
+                + " WHERE cache_key = ? AND lease_owner = ?";
+        this.deleteLease = "UPDATE " + table + " SET lease_owner = NULL, lease_expires_at = NULL"
+                + " WHERE cache_key = ? AND lease_owner = ?";
+    }
+
+    @Override
+    public TokenPair get(String key) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(selectTokens)) {
+            statement.setString(1, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getString(1) == null) {
+                    return null;
+                }
+                return new TokenPair(new AccessToken(resultSet.getString(1), resultSet.getLong(2)),
+                        new RefreshToken(resultSet.getString(3), resultSet.getLong(4)));
+            }
+        } catch (SQLException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean tryAcquireLease(String key, String owner, Duration duration) {
+        long now = clock.millis();
+        try (Connection connection = dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(updateLease)) {
+                statement.setString(1, owner);
+                statement.setLong(2, now + duration.toMillis());
+                statement.setString(3, key);
+                statement.setString(4, owner);
+                statement.setLong(5, now - clockSkew);
+                if (statement.executeUpdate() == 1) {
+                    return true;
+                }
+            }
+            // there is either no row for the key yet, or another node holds the lease
+            try (PreparedStatement statement = connection.prepareStatement(insertLease)) {
+                statement.setString(1, key);
+                statement.setString(2, owner);
+                statement.setLong(3, now + duration.toMillis());
+                return statement.executeUpdate() == 1;
+            } catch (SQLException e) {
+                if (isIntegrityConstraintViolation(e)) {
+                    return false;
+                }
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean put(String key, String owner, TokenPair tokens) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(updateTokens)) {
+            statement.setString(1, tokens.accessToken().token());
+            statement.setLong(2, tokens.accessToken().expiresAt());
+            if (tokens.refreshToken().token() != null) {
+                statement.setString(3, tokens.refreshToken().token());
+            } else {
+                statement.setNull(3, Types.VARCHAR);
+            }
+            statement.setLong(4, tokens.refreshToken().expiresAt());
+            statement.setString(5, key);
+            statement.setString(6, owner);
+            // no row is updated if another node took the lease over after it expired
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void releaseLease(String key, String owner) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(deleteLease)) {
+            statement.setString(1, key);
+            statement.setString(2, owner);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new OAuth2RuntimeException(e);
+        }
+    }
+
+    private static boolean isIntegrityConstraintViolation(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith(SQL_STATE_INTEGRITY_CONSTRAINT_VIOLATION);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Stores the tokens of an OAuth2Client. Stores shared by several processes let them reuse tokens another process
+ * fetched, instead of each fetching their own.
+ */
+public interface TokenStore {
+
+    /**
+     * Returns the stored tokens if they may be used, or fetches new tokens and stores them otherwise. Implementations
+     * shared by several processes make sure only one of them fetches at a time.
+     * @param usable tells whether the stored tokens may be used instead of fetching new ones
+     * @param fetch fetches new tokens, given the stored tokens to refresh them with, or null if none are stored
+     * @return a future of the tokens to use
+     */
+    CompletableFuture<TokenPair> getOrFetch(Predicate<TokenPair> usable, Function<TokenPair, CompletableFuture<TokenPair>> fetch);
+}
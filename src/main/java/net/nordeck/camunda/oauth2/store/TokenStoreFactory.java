@@ -0,0 +1,29 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+/**
+ * Creates the TokenStore of each OAuth2Client. Provide a bean of this type to plug in another store.
+ */
+public interface TokenStoreFactory {
+
+    /**
+     * @param key identifies the tokens, the same for all clients using the same token uri, client id and scope
+     * @return the store of the tokens
+     */
+    TokenStore create(String key);
+}
@@ -16,11 +16,14 @@
  */
 package net.nordeck.camunda.oauth2.time;
 
-import java.util.Date;
-
 /**
  * This interfaces provides a clock of any kind. Mainly used to make time travels in when testing things.
  */
+@FunctionalInterface
 public interface Clock {
-    Date now();
+
+    /**
+     * @return the current time in milliseconds since epoch
+     */
+    long millis();
 }
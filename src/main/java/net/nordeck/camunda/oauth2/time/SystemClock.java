@@ -16,18 +16,16 @@
  */
 package net.nordeck.camunda.oauth2.time;
 
-import java.util.Date;
-
 /**
- * An implementation of net.nordeck.camunda.oauth2.time.Clock to return "now".
+ * An implementation of net.nordeck.camunda.oauth2.time.Clock returning the system time without allocating.
  */
-public class NewDateClock implements Clock {
+public class SystemClock implements Clock {
 
     /**
-     * @return today's date
+     * @return the current system time in milliseconds since epoch
      */
     @Override
-    public Date now() {
-        return new Date();
+    public long millis() {
+        return System.currentTimeMillis();
     }
 }
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OAuth2ClientConcurrencyTest {
+
+    private static final int THREADS = 48;
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private volatile long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatExpiredTokenIsRefreshedOnlyOnce() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        // slow down the refresh, so all threads see the expired token
+        tokenEndpoint.enqueue(tokens("opaque-2").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        OAuth2Client client = tokenEndpoint.clientBuilder(clock).build();
+
+        now += TimeUnit.MINUTES.toMillis(10);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<AccessToken>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return client.getAccessToken();
+                }));
+            }
+            start.countDown();
+
+            for (Future<AccessToken> result : results) {
+                assertEquals("opaque-2", result.get(10, TimeUnit.SECONDS).token());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatCallersJoiningARefreshOfAReplacedTokenGetTheCurrentToken() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(tokens("opaque-2"));
+        OAuth2Client client = tokenEndpoint.clientBuilder(clock).build();
+        AccessToken replaced = client.getAccessToken();
+        client.invalidate(replaced);
+
+        // callers refreshing the replaced token briefly publish a refresh, which others join before it is dropped
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<CompletableFuture<AccessToken>>>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<CompletableFuture<AccessToken>> refreshed = new ArrayList<>();
+                    for (int j = 0; j < 10_000; j++) {
+                        refreshed.add(client.refreshAsync(replaced));
+                    }
+                    return refreshed;
+                }));
+            }
+            start.countDown();
+
+            for (Future<List<CompletableFuture<AccessToken>>> result : results) {
+                for (CompletableFuture<AccessToken> refreshed : result.get(10, TimeUnit.SECONDS)) {
+                    assertEquals("opaque-2", refreshed.get(5, TimeUnit.SECONDS).token());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+}
@@ -24,6 +24,7 @@ import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
 import net.nordeck.camunda.test.JWTCreator;
 import net.nordeck.camunda.test.TokenResponse;
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.FormBody;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -45,6 +46,7 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -118,9 +120,13 @@ public class OAuth2ClientExceptionTest {
 
     @Test
     public void getAccessToken_ThrowsIO() throws IOException {
-        TokenResponse accessTokenResponse = new TokenResponse(ACCESS_TOKEN, null);
-        OkHttpClient httpClient = mockHttpClient(500, accessTokenResponse);
-        when(httpClient.newCall(any()).execute()).thenThrow(new IOException("Exception Message here!"));
+        OkHttpClient httpClient = mock(OkHttpClient.class);
+        Call remoteCall = mock(Call.class);
+        when(httpClient.newCall(any())).thenReturn(remoteCall);
+        doAnswer(invocation -> {
+            invocation.<Callback>getArgument(0).onFailure(remoteCall, new IOException("Exception Message here!"));
+            return null;
+        }).when(remoteCall).enqueue(any());
         when(TOKEN_REQUEST_FACTORY.createTokenRequest()).thenReturn(createRequest());
 
         OAuth2RuntimeException oAuth2RuntimeException = assertThrows(OAuth2RuntimeException.class, () -> new OAuth2Client(TOKEN_REQUEST_FACTORY, httpClient, mock(TokenValidator.class)));
@@ -144,7 +150,10 @@ public class OAuth2ClientExceptionTest {
                 .body(responseBody)
                 .build();
 
-        when(remoteCall.execute()).thenReturn(response);
+        doAnswer(invocation -> {
+            invocation.<Callback>getArgument(0).onResponse(remoteCall, response);
+            return null;
+        }).when(remoteCall).enqueue(any());
         when(okHttpClient.newCall(any())).thenReturn(remoteCall);
 
         return okHttpClient;
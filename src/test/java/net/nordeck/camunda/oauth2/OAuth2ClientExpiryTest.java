@@ -0,0 +1,169 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.JWTCreator;
+import net.nordeck.camunda.test.TokenEndpoint;
+import net.nordeck.camunda.test.TokenResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OAuth2ClientExpiryTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatOpaqueTokensExpireAfterExpiresIn() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 60L, 120L));
+        OAuth2Client oAuth2Client = createClient();
+
+        assertEquals(now + 60_000, oAuth2Client.getAccessToken().expiresAt());
+        now += 59_000;
+        assertEquals("opaque-1", oAuth2Client.getAccessToken().token());
+        now += 2_000;
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+
+        assertThat(tokenEndpoint.takeRequestBody()).contains("grant_type=client_credentials");
+        assertThat(tokenEndpoint.takeRequestBody()).contains("grant_type=refresh_token").contains("refresh_token=refresh-1");
+    }
+
+    @Test
+    public void thatExpiredRefreshTokensAreNotUsed() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 60L, 120L));
+        OAuth2Client oAuth2Client = createClient();
+
+        oAuth2Client.getAccessToken();
+        now += 121_000;
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+
+        tokenEndpoint.takeRequestBody();
+        assertThat(tokenEndpoint.takeRequestBody()).contains("grant_type=client_credentials").doesNotContain("refresh_token");
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatRefreshTokensWithoutExpiryAreUsed() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 0L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-1", 60L, 0L));
+        OAuth2Client oAuth2Client = createClient();
+
+        oAuth2Client.getAccessToken();
+        now += 365L * 24 * 60 * 60 * 1000;
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+
+        tokenEndpoint.takeRequestBody();
+        assertThat(tokenEndpoint.takeRequestBody()).contains("grant_type=refresh_token");
+    }
+
+    @Test
+    public void thatJwtExpiryIsUsedWithoutExpiresIn() throws Exception {
+        Instant expiresAt = Instant.now().plus(5, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        tokenEndpoint.enqueue(new TokenResponse(JWTCreator.create(expiresAt), "refresh-1"));
+        OAuth2Client oAuth2Client = createClient();
+
+        assertEquals(expiresAt.toEpochMilli(), oAuth2Client.getAccessToken().expiresAt());
+    }
+
+    @Test
+    public void thatTheClockSkewOfJwtsIsCompensated() throws Exception {
+        now = Instant.now().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+        // the clock of the identity provider is 20 seconds behind ours
+        Instant issuedAt = Instant.ofEpochMilli(now).minusSeconds(20);
+        Instant expiresAt = issuedAt.plus(5, ChronoUnit.MINUTES);
+        tokenEndpoint.enqueue(new TokenResponse(JWTCreator.create(issuedAt, expiresAt), "refresh-1"));
+        tokenEndpoint.enqueue(new TokenResponse(JWTCreator.create(issuedAt, expiresAt), "refresh-1"));
+
+        assertEquals(expiresAt.plusSeconds(20).toEpochMilli(),
+                createClient(Duration.ofSeconds(30)).getAccessToken().expiresAt());
+        assertEquals(expiresAt.plusSeconds(5).toEpochMilli(),
+                createClient(Duration.ofSeconds(5)).getAccessToken().expiresAt());
+    }
+
+    @Test
+    public void thatJwtsOfAnIdentityProviderAheadOfUsExpireAtTheCompensatedExpiry() {
+        now = Instant.now().truncatedTo(ChronoUnit.SECONDS).toEpochMilli();
+        // the clock of the identity provider is 3 seconds ahead of ours, within the tolerated 5 seconds
+        Instant issuedAt = Instant.ofEpochMilli(now).plusSeconds(3);
+        String accessToken = JWTCreator.create(issuedAt, issuedAt.plus(5, ChronoUnit.MINUTES));
+        tokenEndpoint.enqueue(new TokenResponse(accessToken, "refresh-1"));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 60L, 120L));
+        OAuth2Client oAuth2Client = createClient(Duration.ofSeconds(5));
+
+        long expiresAt = now + Duration.ofMinutes(5).toMillis();
+        assertEquals(expiresAt, oAuth2Client.getAccessToken().expiresAt());
+        now = expiresAt;
+        assertEquals(accessToken, oAuth2Client.getAccessToken().token());
+        now = expiresAt + 1;
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+    }
+
+    @Test
+    public void thatJwtsWithoutIatExpireTheClockSkewBeforeTheirExpiry() {
+        Instant expiresAt = Instant.now().plus(5, ChronoUnit.MINUTES).truncatedTo(ChronoUnit.SECONDS);
+        tokenEndpoint.enqueue(new TokenResponse(JWTCreator.create(null, expiresAt), "refresh-1"));
+
+        assertEquals(expiresAt.minusSeconds(5).toEpochMilli(),
+                createClient(Duration.ofSeconds(5)).getAccessToken().expiresAt());
+    }
+
+    @Test
+    public void thatExpiresInIsNotShortenedByTheClockSkew() {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 60L, 120L));
+        OAuth2Client oAuth2Client = createClient(Duration.ofSeconds(5));
+
+        now += 60_000;
+        assertEquals("opaque-1", oAuth2Client.getAccessToken().token());
+        now += 1;
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+    }
+
+    @Test
+    public void thatOpaqueTokensWithoutExpiresInAreRejected() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1"));
+
+        TokenResponseInvalidException exception = assertThrows(TokenResponseInvalidException.class, this::createClient);
+        assertThat(exception.getMessage()).contains("expires_in");
+    }
+
+    private OAuth2Client createClient() {
+        return createClient(Duration.ZERO);
+    }
+
+    private OAuth2Client createClient(Duration clockSkew) {
+        return tokenEndpoint.clientBuilder(clock)
+                .clockSkew(clockSkew)
+                .build();
+    }
+
+}
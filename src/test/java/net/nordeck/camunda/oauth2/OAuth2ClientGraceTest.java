@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import okhttp3.mockwebserver.MockResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OAuth2ClientGraceTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatTokenIsServedWhileRefreshedAhead() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(tokens("opaque-2").setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        OAuth2Client oAuth2Client = createClient();
+
+        now += Duration.ofSeconds(31).toMillis();
+
+        assertEquals("opaque-1", oAuth2Client.getAccessToken().token());
+        AccessToken refreshed = oAuth2Client.refreshAsync(oAuth2Client.getAccessToken()).get(5, TimeUnit.SECONDS);
+        assertEquals("opaque-2", refreshed.token());
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatTokenIsServedWhileRefreshFails() {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(503).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        OAuth2Client oAuth2Client = createClient();
+
+        now += Duration.ofSeconds(31).toMillis();
+
+        AccessToken accessToken = oAuth2Client.getAccessToken();
+        assertEquals("opaque-1", accessToken.token());
+        // wait for the refresh in flight to fail
+        assertThrows(CompletionException.class, () -> oAuth2Client.refreshAsync(accessToken).join());
+
+        now += Duration.ofSeconds(1).toMillis();
+        assertEquals("opaque-1", oAuth2Client.getAccessToken().token());
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatFailuresAreCachedOnceTokenExpired() {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(503));
+        OAuth2Client oAuth2Client = createClient();
+
+        now += Duration.ofSeconds(61).toMillis();
+        TokenResponseInvalidException failure = assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken);
+
+        now += Duration.ofSeconds(4).toMillis();
+        assertSame(failure, assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken));
+        assertEquals(2, tokenEndpoint.getRequestCount());
+
+        tokenEndpoint.enqueue(tokens("opaque-2"));
+        now += Duration.ofSeconds(1).toMillis();
+        assertEquals("opaque-2", oAuth2Client.getAccessToken().token());
+        assertEquals(3, tokenEndpoint.getRequestCount());
+    }
+
+    private OAuth2Client createClient() {
+        return tokenEndpoint.clientBuilder(clock)
+                .grace(new OAuth2ConfigProperties.Grace(true, Duration.ofSeconds(30), Duration.ofSeconds(5)))
+                .build();
+    }
+
+}
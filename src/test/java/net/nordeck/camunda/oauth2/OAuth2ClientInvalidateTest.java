@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import okhttp3.mockwebserver.MockResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OAuth2ClientInvalidateTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private final long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatRejectedTokensAreReplacedByNewTokens() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(tokens("opaque-2"));
+        OAuth2Client client = tokenEndpoint.clientBuilder(clock).build();
+
+        AccessToken replaced = client.invalidate(client.getAccessToken());
+
+        assertEquals("opaque-2", replaced.token());
+        assertEquals("opaque-2", client.getAccessToken().token());
+        tokenEndpoint.takeRequestBody();
+        assertThat(tokenEndpoint.takeRequestBody())
+                .contains("grant_type=client_credentials")
+                .doesNotContain("refresh_token");
+    }
+
+    @Test
+    public void thatBurstsOfRejectionsCauseOneTokenRequest() {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(tokens("opaque-2").setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        OAuth2Client client = tokenEndpoint.clientBuilder(clock).build();
+        AccessToken rejected = client.getAccessToken();
+
+        List<CompletableFuture<AccessToken>> replaced = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            replaced.add(client.invalidateAsync(rejected));
+        }
+        replaced.forEach(accessToken -> assertEquals("opaque-2", accessToken.join().token()));
+        // rejections of requests sent before the token was replaced
+        assertEquals("opaque-2", client.invalidate(rejected).token());
+
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatCallersStillHoldingARejectedTokenWaitForItsReplacement() {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(400));
+        tokenEndpoint.enqueue(tokens("opaque-2"));
+        OAuth2Client client = tokenEndpoint.clientBuilder(clock).build();
+        AccessToken rejected = client.getAccessToken();
+
+        assertThrows(TokenResponseInvalidException.class, () -> client.invalidate(rejected));
+
+        // callers which got the rejected token before it was dropped must not get it back
+        assertEquals("opaque-2", client.invalidate(rejected).token());
+        assertEquals(3, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatRejectedTokensAreNotServedIfTheyCannotBeReplaced() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(400));
+        OAuth2Client client = tokenEndpoint.clientBuilder(clock)
+                .grace(new OAuth2ConfigProperties.Grace(true, Duration.ofSeconds(30), Duration.ZERO))
+                .build();
+
+        assertThrows(TokenResponseInvalidException.class, () -> client.invalidate(client.getAccessToken()));
+
+        tokenEndpoint.enqueue(tokens("opaque-2"));
+        assertEquals("opaque-2", client.getAccessTokenAsync().get(5, TimeUnit.SECONDS).token());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OAuth2ClientPrewarmerTest {
+
+    @Test
+    public void thatTheTokensOfAllClientsAreFetched() {
+        OAuth2Client first = mock(OAuth2Client.class);
+        OAuth2Client second = mock(OAuth2Client.class);
+        when(first.getAccessTokenAsync()).thenReturn(CompletableFuture.completedFuture(new AccessToken("first", Long.MAX_VALUE)));
+        when(second.getAccessTokenAsync()).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("unavailable")));
+
+        new OAuth2ClientPrewarmer(List.of(first, second), Duration.ofSeconds(1)).run(new DefaultApplicationArguments());
+
+        verify(first).getAccessTokenAsync();
+        verify(second).getAccessTokenAsync();
+    }
+
+    @Test
+    public void thatTheApplicationStartsWithoutTokensAfterTheTimeout() {
+        OAuth2Client oAuth2Client = mock(OAuth2Client.class);
+        when(oAuth2Client.getAccessTokenAsync()).thenReturn(new CompletableFuture<>());
+
+        assertTimeout(Duration.ofSeconds(5), () -> new OAuth2ClientPrewarmer(List.of(oAuth2Client), Duration.ofMillis(100))
+                .run(new DefaultApplicationArguments()));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.config.StartupMode;
+import net.nordeck.camunda.oauth2.config.TokenValidator;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import net.nordeck.camunda.oauth2.exception.TokenEndpointUnavailableException;
+import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OAuth2ClientRetryTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatTransientFailuresAreRetried() throws Exception {
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(503));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        tokenEndpoint.enqueue(TokenEndpoint.tokens("opaque"));
+        OAuth2Client oAuth2Client = createClient(3, 5);
+
+        assertEquals("opaque", oAuth2Client.getAccessToken().token());
+        assertEquals(3, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatRetriesGiveUpAfterMaxAttempts() {
+        for (int i = 0; i < 3; i++) {
+            tokenEndpoint.enqueue(new MockResponse().setResponseCode(500));
+        }
+        OAuth2Client oAuth2Client = createClient(3, 5);
+
+        assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken);
+        assertEquals(3, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatRejectedRequestsAreNotRetried() {
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(401));
+        OAuth2Client oAuth2Client = createClient(3, 5);
+
+        assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken);
+        assertEquals(1, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatOpenCircuitFailsFastUntilProbeSucceeds() throws Exception {
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(502));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(502));
+        tokenEndpoint.enqueue(TokenEndpoint.tokens("opaque"));
+        OAuth2Client oAuth2Client = createClient(1, 2);
+
+        assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken);
+        assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken);
+        assertThrows(TokenEndpointUnavailableException.class, oAuth2Client::getAccessToken);
+        assertEquals(2, tokenEndpoint.getRequestCount());
+
+        now += Duration.ofSeconds(30).toMillis();
+
+        assertEquals("opaque", oAuth2Client.getAccessToken().token());
+        assertEquals(3, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatATokenEndpointWhichDoesNotAnswerOpensTheCircuit() {
+        tokenEndpoint.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        OAuth2Client oAuth2Client = createClient(1, 1, readTimeout());
+
+        assertThrows(OAuth2RuntimeException.class, oAuth2Client::getAccessToken);
+
+        assertEquals(CircuitBreaker.State.OPEN, oAuth2Client.getTokenState().circuitBreakerState());
+        assertThrows(TokenEndpointUnavailableException.class, oAuth2Client::getAccessToken);
+        assertEquals(1, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatTimedOutClientCredentialsRequestsAreRetried() throws Exception {
+        tokenEndpoint.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        tokenEndpoint.enqueue(TokenEndpoint.tokens("opaque"));
+        OAuth2Client oAuth2Client = createClient(2, 5, readTimeout());
+
+        assertEquals("opaque", oAuth2Client.getAccessToken().token());
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatTimedOutRefreshTokenRequestsAreNotRetried() throws Exception {
+        tokenEndpoint.enqueue(TokenEndpoint.tokens("opaque"));
+        tokenEndpoint.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+        OAuth2Client oAuth2Client = createClient(2, 5, readTimeout());
+        oAuth2Client.getAccessToken();
+
+        now += 61_000;
+
+        assertThrows(OAuth2RuntimeException.class, oAuth2Client::getAccessToken);
+        assertEquals(2, tokenEndpoint.getRequestCount());        tokenEndpoint.takeRequestBody();
+        assertThat(tokenEndpoint.takeRequestBody()).contains("grant_type=refresh_token");
+    }
+
+    @Test
+    public void thatClientsNeitherRetryNorOpenTheCircuitUnlessConfigured() {
+        for (int i = 0; i < 7; i++) {
+            tokenEndpoint.enqueue(new MockResponse().setResponseCode(503));
+        }
+
+        assertThrows(TokenResponseInvalidException.class, () -> new OAuth2Client(tokenEndpoint.tokenRequestFactory(),
+                tokenEndpoint.httpClient(), new TokenValidator(clock)));
+        assertEquals(1, tokenEndpoint.getRequestCount());
+
+        OAuth2Client oAuth2Client = tokenEndpoint.clientBuilder(clock).startupMode(StartupMode.LAZY).build();
+        for (int i = 0; i < 6; i++) {
+            assertThrows(TokenResponseInvalidException.class, oAuth2Client::getAccessToken);
+        }
+        assertEquals(7, tokenEndpoint.getRequestCount());
+    }
+
+    private OAuth2Client createClient(int maxAttempts, int failureThreshold) {
+        return createClient(maxAttempts, failureThreshold, tokenEndpoint.httpClient());
+    }
+
+    private OkHttpClient readTimeout() {
+        return tokenEndpoint.httpClient().newBuilder().readTimeout(Duration.ofMillis(200)).build();
+    }
+
+    private OAuth2Client createClient(int maxAttempts, int failureThreshold, OkHttpClient httpClient) {
+        return OAuth2Client.builder(tokenEndpoint.tokenRequestFactory(), httpClient)
+                .clock(clock)
+                .retryPolicy(new RetryPolicy(new OAuth2ConfigProperties.Retry(maxAttempts, Duration.ofMillis(10),
+                        Duration.ofSeconds(1), 2.0, 0.5)))
+                .circuitBreaker(new CircuitBreaker(
+                        new OAuth2ConfigProperties.CircuitBreaker(true, failureThreshold, Duration.ofSeconds(30)), clock))
+                .startupMode(StartupMode.LAZY)
+                .build();
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.nordeck.camunda.oauth2.config.OAuth2ClientAutoconfiguration;
+import net.nordeck.camunda.test.JWTCreator;
+import net.nordeck.camunda.test.TokenResponse;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the context startup against a token endpoint which takes {@link #TOKEN_ENDPOINT_DELAY} to respond.
+ */
+public class OAuth2ClientStartupTest {
+
+    private static final Duration TOKEN_ENDPOINT_DELAY = Duration.ofSeconds(2);
+    private static final String ACCESS_TOKEN = JWTCreator.create();
+
+    private MockWebServer mockWebServer;
+
+    @BeforeEach
+    public void prepareMockServer() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody(new ObjectMapper().writeValueAsString(new TokenResponse(ACCESS_TOKEN, JWTCreator.create())))
+                .setHeadersDelay(TOKEN_ENDPOINT_DELAY.toMillis(), TimeUnit.MILLISECONDS));
+        mockWebServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        mockWebServer.shutdown();
+    }
+
+    @Test
+    public void thatEagerStartupWaitsForTokenEndpoint() {
+        long startedAt = System.nanoTime();
+        contextRunner("eager").run(context -> {
+            assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isGreaterThanOrEqualTo(TOKEN_ENDPOINT_DELAY);
+            assertEquals(1, mockWebServer.getRequestCount());
+        });
+    }
+
+    @Test
+    public void thatLazyStartupDoesNotWaitForTokenEndpoint() {
+        long startedAt = System.nanoTime();
+        contextRunner("lazy").run(context -> {
+            assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(TOKEN_ENDPOINT_DELAY);
+            assertEquals(0, mockWebServer.getRequestCount());
+
+            assertEquals(ACCESS_TOKEN, context.getBean(OAuth2Client.class).getAccessToken().token());
+            assertEquals(1, mockWebServer.getRequestCount());
+        });
+    }
+
+    @Test
+    public void thatBackgroundStartupDoesNotWaitForTokenEndpoint() {
+        long startedAt = System.nanoTime();
+        contextRunner("background").run(context -> {
+            assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(TOKEN_ENDPOINT_DELAY);
+
+            // the first use waits for the fetch already started in the background instead of starting another one
+            assertEquals(ACCESS_TOKEN, context.getBean(OAuth2Client.class).getAccessToken().token());
+            assertEquals(1, mockWebServer.getRequestCount());
+        });
+    }
+
+    private ApplicationContextRunner contextRunner(String startupMode) {
+        return new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(OAuth2ClientAutoconfiguration.class))
+                .withBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME, OkHttpClient.class, OkHttpClient::new)
+                .withPropertyValues(
+                        "oauth2.issuer-uri=" + mockWebServer.url("/issuer-uri"),
+                        "oauth2.token-uri=" + mockWebServer.url("/token-uri"),
+                        "oauth2.client-id=some_client_id",
+                        "oauth2.client-secret=some_client_secret",
+                        "oauth2.scope=some_scope",
+                        "oauth2.startup=" + startupMode);
+    }
+}
@@ -37,7 +37,8 @@ import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.io.IOException;
-import java.util.Date;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.when;
@@ -55,7 +56,7 @@ public class OAuth2ClientTest {
     private static final int ONE_DAY_IN_MILLISECONDS = 86400000;
     private static MockWebServer mockWebServer;
     private static final String ACCESS_TOKEN = JWTCreator.create();
-    private static final String REFRESH_TOKEN = JWTCreator.create();
+    private static final String REFRESH_TOKEN = JWTCreator.create(Instant.now().plus(2L, ChronoUnit.DAYS));
     private static final String REFRESHED_ACCESS_TOKEN = JWTCreator.create();
 
     @MockBean
@@ -110,7 +111,7 @@ public class OAuth2ClientTest {
 
     @BeforeEach
     public void initDefaultJwtClock() {
-        when(jwtClock.now()).thenReturn(new Date());
+        when(jwtClock.millis()).thenReturn(System.currentTimeMillis());
     }
 
     @Test
@@ -119,13 +120,28 @@ public class OAuth2ClientTest {
         assertEquals(ACCESS_TOKEN, fetchedAccessToken.token());
     }
 
+    @Test
+    public void thatTokensAreFetchedAsync() throws Exception {
+        AccessToken fetchedAccessToken = oAuth2Client.getAccessTokenAsync().get();
+        assertEquals(ACCESS_TOKEN, fetchedAccessToken.token());
+    }
+
+    @Test
+    public void thatTokenIsRefreshedAsyncWhenExpired() throws Exception {
+        long oldNow = jwtClock.millis();
+        when(jwtClock.millis()).thenReturn(oldNow + ONE_DAY_IN_MILLISECONDS);
+
+        AccessToken refreshedAccessToken = oAuth2Client.getAccessTokenAsync().get();
+        assertEquals(REFRESHED_ACCESS_TOKEN, refreshedAccessToken.token());
+    }
+
     @Test
     public void thatTokenIsRefreshedWhenExpired() {
         AccessToken accessToken = oAuth2Client.getAccessToken();
         assertEquals(ACCESS_TOKEN, accessToken.token());
 
-        Date oldNow = jwtClock.now();
-        when(jwtClock.now()).thenReturn(new Date(oldNow.getTime() + ONE_DAY_IN_MILLISECONDS));
+        long oldNow = jwtClock.millis();
+        when(jwtClock.millis()).thenReturn(oldNow + ONE_DAY_IN_MILLISECONDS);
 
         AccessToken refreshedAccessToken = oAuth2Client.getAccessToken();
         assertEquals(REFRESHED_ACCESS_TOKEN, refreshedAccessToken.token());
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryPolicyTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final RetryPolicy retryPolicy = new RetryPolicy(
+            new OAuth2ConfigProperties.Retry(4, Duration.ofMillis(100), Duration.ofSeconds(1), 2.0, 0.5));
+
+    @Test
+    public void thatBackoffGrowsExponentiallyWithJitter() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.delayMillis(1, null, NOW)).isBetween(50L, 100L);
+            assertThat(retryPolicy.delayMillis(2, null, NOW)).isBetween(100L, 200L);
+            assertThat(retryPolicy.delayMillis(3, null, NOW)).isBetween(200L, 400L);
+        }
+    }
+
+    @Test
+    public void thatRetriesStopAfterMaxAttempts() {
+        assertEquals(-1, retryPolicy.delayMillis(4, null, NOW));
+        assertEquals(-1, RetryPolicy.NO_RETRY.delayMillis(1, null, NOW));
+    }
+
+    @Test
+    public void thatRetryAfterIsHonoured() {
+        assertEquals(0, retryPolicy.delayMillis(1, "0", NOW));
+        assertEquals(1000, retryPolicy.delayMillis(1, "1", NOW));
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(NOW + 1000).atOffset(ZoneOffset.UTC));
+        assertEquals(1000, retryPolicy.delayMillis(1, date, NOW));
+    }
+
+    @Test
+    public void thatRetryAfterBeyondMaxBackoffIsNotWaitedFor() {
+        assertEquals(-1, retryPolicy.delayMillis(1, "120", NOW));
+    }
+
+    @Test
+    public void thatInvalidRetryAfterFallsBackToBackoff() {
+        assertThat(retryPolicy.delayMillis(1, "soon", NOW)).isBetween(50L, 100L);
+    }
+
+    @Test
+    public void thatOnlyTransientFailuresAreRetried() {
+        assertTrue(RetryPolicy.isTransient(500));
+        assertTrue(RetryPolicy.isTransient(503));
+        assertTrue(RetryPolicy.isTransient(429));
+        assertFalse(RetryPolicy.isTransient(400));
+        assertFalse(RetryPolicy.isTransient(401));
+
+        assertTrue(RetryPolicy.isTransient(new ConnectException("Connection refused")));
+        assertTrue(RetryPolicy.isTransient(new SocketTimeoutException("connect timed out")));
+        assertFalse(RetryPolicy.isTransient(new SocketTimeoutException("timeout")));
+        assertFalse(RetryPolicy.isTransient(new IOException("unexpected end of stream")));
+    }
+
+    @Test
+    public void thatTimeoutsAreOnlyRetriedForIdempotentRequests() {
+        assertTrue(RetryPolicy.isRetryable(new SocketTimeoutException("timeout"), true));
+        assertTrue(RetryPolicy.isRetryable(new InterruptedIOException("timeout"), true));
+        assertFalse(RetryPolicy.isRetryable(new SocketTimeoutException("timeout"), false));
+        assertTrue(RetryPolicy.isRetryable(new ConnectException("Connection refused"), false));
+        assertFalse(RetryPolicy.isRetryable(new IOException("unexpected end of stream"), true));
+    }
+}
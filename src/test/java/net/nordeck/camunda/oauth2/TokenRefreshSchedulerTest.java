@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.time.Clock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TokenRefreshSchedulerTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final Clock FIXED_CLOCK = () -> NOW;
+
+    @Test
+    public void thatTokenIsRefreshedAfterLifetimeFraction() {
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(mock(OAuth2Client.class), FIXED_CLOCK, refresh(0.8, null));
+
+        assertEquals(80_000, scheduler.delayMillis(new AccessToken("token", NOW + 100_000)));
+    }
+
+    @Test
+    public void thatTokenIsRefreshedSkewBeforeExpiry() {
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(mock(OAuth2Client.class), FIXED_CLOCK, refresh(0.8, Duration.ofSeconds(30)));
+
+        assertEquals(70_000, scheduler.delayMillis(new AccessToken("token", NOW + 100_000)));
+    }
+
+    @Test
+    public void thatLifetimeFractionIsUsedWhenSkewExceedsLifetime() {
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(mock(OAuth2Client.class), FIXED_CLOCK, refresh(0.5, Duration.ofMinutes(5)));
+
+        assertEquals(50_000, scheduler.delayMillis(new AccessToken("token", NOW + 100_000)));
+    }
+
+    @Test
+    public void thatExpiredTokenIsNotRefreshedInATightLoop() {
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(mock(OAuth2Client.class), FIXED_CLOCK, refresh(0.8, null));
+
+        assertEquals(1000, scheduler.delayMillis(new AccessToken("token", NOW - 100_000)));
+    }
+
+    @Test
+    public void thatTokenIsRefreshedInBackground() {
+        AccessToken accessToken = new AccessToken("token", System.currentTimeMillis() + 2000);
+        AccessToken refreshedAccessToken = new AccessToken("refreshed", System.currentTimeMillis() + 60_000);
+        OAuth2Client oAuth2Client = mock(OAuth2Client.class);
+        when(oAuth2Client.refreshAsync(null)).thenReturn(CompletableFuture.completedFuture(accessToken));
+        when(oAuth2Client.refreshAsync(accessToken)).thenReturn(CompletableFuture.completedFuture(refreshedAccessToken));
+
+        try (TokenRefreshScheduler scheduler = new TokenRefreshScheduler(oAuth2Client, System::currentTimeMillis, refresh(0.5, null))) {
+            scheduler.start();
+
+            verify(oAuth2Client, timeout(5000)).refreshAsync(accessToken);
+        }
+    }
+
+    @Test
+    public void thatRefreshesInFlightAreNotRescheduledAfterClose() {
+        CompletableFuture<AccessToken> inFlight = new CompletableFuture<>();
+        OAuth2Client oAuth2Client = mock(OAuth2Client.class);
+        when(oAuth2Client.refreshAsync(null)).thenReturn(inFlight);
+        TokenRefreshScheduler scheduler = new TokenRefreshScheduler(oAuth2Client, FIXED_CLOCK, refresh(0.5, null));
+        scheduler.start();
+
+        scheduler.close();
+        inFlight.completeExceptionally(new IllegalStateException("unavailable"));
+
+        verify(oAuth2Client, after(1500).times(1)).refreshAsync(any());
+    }
+
+    private static OAuth2ConfigProperties.Refresh refresh(double lifetimeFraction, Duration skew) {
+        return new OAuth2ConfigProperties.Refresh(true, lifetimeFraction, skew, Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.auth.TlsClientAuthentication;
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import okhttp3.Request;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TokenRequestFactoryTest {
+
+    private final TokenRequestFactory tokenRequestFactory = new TokenRequestFactory(new OAuth2ConfigProperties(
+            "http://localhost/issuer-uri",
+            "http://localhost/token-uri",
+            "some_client_id",
+            "some secret&more",
+            "openid profile"));
+
+    @Test
+    public void thatTokenRequestIsEncodedOnce() throws IOException {
+        Request request = tokenRequestFactory.createTokenRequest();
+
+        assertSame(request, tokenRequestFactory.createTokenRequest());
+        assertEquals("http://localhost/token-uri", request.url().toString());
+        assertEquals("POST", request.method());
+        assertEquals("application/x-www-form-urlencoded", request.body().contentType().toString());
+        assertEquals("client_id=some_client_id&client_secret=some%20secret%26more&grant_type=client_credentials&scope=openid%20profile",
+                body(request));
+        // the body can be written again for the next request
+        assertEquals(body(request), body(tokenRequestFactory.createTokenRequest()));
+    }
+
+    @Test
+    public void thatRefreshTokenIsAppended() throws IOException {
+        Request request = tokenRequestFactory.createRefreshTokenRequest("some.refresh+token");
+
+        assertEquals("http://localhost/token-uri", request.url().toString());
+        assertEquals("client_id=some_client_id&client_secret=some%20secret%26more&grant_type=refresh_token&refresh_token=some.refresh%2Btoken",
+                body(request));
+    }
+
+    @Test
+    public void thatTokenRequestIsEncodedAgainForNewClientAssertions() throws IOException {
+        AtomicReference<byte[]> formParameters = new AtomicReference<>("client_id=some_client_id&client_assertion=first".getBytes());
+        TokenRequestFactory assertionTokenRequestFactory = new TokenRequestFactory("http://localhost/token-uri",
+                formParameters::get, "openid");
+
+        Request request = assertionTokenRequestFactory.createTokenRequest();
+        assertSame(request, assertionTokenRequestFactory.createTokenRequest());
+
+        formParameters.set("client_id=some_client_id&client_assertion=second".getBytes());
+        assertEquals("client_id=some_client_id&client_assertion=second&grant_type=client_credentials&scope=openid",
+                body(assertionTokenRequestFactory.createTokenRequest()));
+        assertEquals("client_id=some_client_id&client_assertion=second&grant_type=refresh_token&refresh_token=token",
+                body(assertionTokenRequestFactory.createRefreshTokenRequest("token")));
+    }
+
+    @Test
+    public void thatTlsClientAuthenticationOnlySendsTheClientId() throws IOException {
+        TokenRequestFactory tlsTokenRequestFactory = new TokenRequestFactory("http://localhost/token-uri",
+                new TlsClientAuthentication("some_client_id"), "openid");
+
+        assertEquals("client_id=some_client_id&grant_type=client_credentials&scope=openid",
+                body(tlsTokenRequestFactory.createTokenRequest()));
+    }
+
+    private static String body(Request request) throws IOException {
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        return buffer.readUtf8();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2;
+
+import net.nordeck.camunda.oauth2.dto.TokenResponse;
+import net.nordeck.camunda.oauth2.exception.TokenResponseInvalidException;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TokenResponseParserTest {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final TokenResponseParser tokenResponseParser = new TokenResponseParser(1024);
+
+    @Test
+    public void thatAllFieldsAreParsed() throws IOException {
+        TokenResponse tokenResponse = tokenResponseParser.parse(ResponseBody.create("""
+                {"access_token":"access","expires_in":300,"refresh_expires_in":"1800","refresh_token":"refresh",
+                "token_type":"Bearer","not-before-policy":0,"session_state":"state","scope":"profile email",
+                "nested":{"access_token":"ignored","list":[1,2,{"refresh_token":"ignored"}]}}
+                """, JSON));
+
+        assertEquals(new TokenResponse("access", "refresh", 300L, 1800L, "Bearer"), tokenResponse);
+    }
+
+    @Test
+    public void thatMissingFieldsAreNull() throws IOException {
+        TokenResponse tokenResponse = tokenResponseParser.parse(ResponseBody.create("{\"access_token\":\"access\",\"refresh_token\":null}", JSON));
+
+        assertEquals("access", tokenResponse.accessToken());
+        assertNull(tokenResponse.refreshToken());
+        assertNull(tokenResponse.expiresIn());
+        assertNull(tokenResponse.refreshExpiresIn());
+        assertNull(tokenResponse.tokenType());
+    }
+
+    @Test
+    public void thatNonObjectIsRejected() {
+        assertThrows(TokenResponseInvalidException.class, () -> tokenResponseParser.parse(ResponseBody.create("[]", JSON)));
+    }
+
+    @Test
+    public void thatTooLargeBodyIsRejected() {
+        String body = "{\"access_token\":\"" + "a".repeat(2048) + "\"}";
+
+        assertThrows(TokenResponseInvalidException.class, () -> tokenResponseParser.parse(ResponseBody.create(body, JSON)));
+    }
+
+    @Test
+    public void thatTooLargeBodyWithoutContentLengthIsRejected() {
+        Buffer source = new Buffer().writeUtf8("{\"access_token\":\"" + "a".repeat(2048) + "\"}");
+
+        assertThrows(TokenResponseInvalidException.class, () -> tokenResponseParser.parse(ResponseBody.create(source, JSON, -1)));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import org.camunda.bpm.client.backoff.ErrorAwareBackoffStrategy;
+import org.camunda.bpm.client.exception.EngineException;
+import org.camunda.bpm.client.exception.RestException;
+import org.camunda.bpm.client.exception.UnknownHttpErrorException;
+import okhttp3.OkHttpClient;
+import org.camunda.bpm.client.backoff.BackoffStrategy;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OAuth2BackoffStrategyTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(OAuth2ClientAutoconfiguration.class))
+            .withBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME, OkHttpClient.class, OkHttpClient::new)
+            .withPropertyValues(
+                    "oauth2.token-uri=http://localhost/token",
+                    "oauth2.client-id=client",
+                    "oauth2.client-secret=secret",
+                    "oauth2.scope=scope",
+                    "oauth2.startup=lazy");
+
+    private final OAuth2RequestInterceptor interceptor = mock(OAuth2RequestInterceptor.class);
+    private final ErrorAwareBackoffStrategy delegate = mock(ErrorAwareBackoffStrategy.class);
+    private final OAuth2BackoffStrategy backoffStrategy = new OAuth2BackoffStrategy(interceptor, delegate);
+    private final AccessToken accessToken = new AccessToken("token", Long.MAX_VALUE);
+
+    @Test
+    public void thatTheBackoffStrategyIsOnlyConfiguredWhenEnabled() {
+        contextRunner.run(context -> assertThat(context).doesNotHaveBean(BackoffStrategy.class));
+        contextRunner.withPropertyValues("oauth2.backoff.enabled=true")
+                .run(context -> assertThat(context).hasSingleBean(OAuth2BackoffStrategy.class));
+    }
+
+    @Test
+    public void thatRejectedRequestsAreReplayedOnceWithANewToken() {
+        when(interceptor.invalidateSentAccessToken()).thenReturn(accessToken);
+        when(delegate.calculateBackoffTime()).thenReturn(1_000L);
+        UnknownHttpErrorException unauthorized = unauthorized();
+
+        backoffStrategy.reconfigure(List.of(), unauthorized);
+        assertEquals(0, backoffStrategy.calculateBackoffTime());
+        verify(interceptor).invalidateSentAccessToken();
+
+        backoffStrategy.reconfigure(List.of(), unauthorized);
+        assertEquals(1_000, backoffStrategy.calculateBackoffTime());
+        verify(interceptor, times(1)).invalidateSentAccessToken();
+        verify(delegate).reconfigure(List.of(), unauthorized);
+    }
+
+    @Test
+    public void thatRequestsSentWithoutTokenAreNotReplayed() {
+        when(delegate.calculateBackoffTime()).thenReturn(1_000L);
+        UnknownHttpErrorException unauthorized = unauthorized();
+
+        backoffStrategy.reconfigure(List.of(), unauthorized);
+
+        assertEquals(1_000, backoffStrategy.calculateBackoffTime());
+        verify(delegate).reconfigure(List.of(), unauthorized);
+    }
+
+    @Test
+    public void thatOtherErrorsAreLeftToTheDelegate() {
+        EngineException error = new EngineException("failed", restException(500));
+        when(delegate.calculateBackoffTime()).thenReturn(1_000L);
+
+        backoffStrategy.reconfigure(List.of(), error);
+
+        assertEquals(1_000, backoffStrategy.calculateBackoffTime());
+        verify(interceptor, never()).invalidateSentAccessToken();
+        verify(delegate).reconfigure(List.of(), error);
+    }
+
+    @Test
+    public void thatUnauthorizedResponsesAreDetected() {
+        assertTrue(OAuth2BackoffStrategy.isUnauthorized(unauthorized()));
+        assertFalse(OAuth2BackoffStrategy.isUnauthorized(new EngineException("failed", restException(500))));
+        assertFalse(OAuth2BackoffStrategy.isUnauthorized(null));
+    }
+
+    static UnknownHttpErrorException unauthorized() {
+        return new UnknownHttpErrorException("unauthorized", restException(401));
+    }
+
+    private static RestException restException(int httpStatusCode) {
+        RestException restException = new RestException("failed", null, null);
+        restException.setHttpStatusCode(httpStatusCode);
+        return restException;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import org.camunda.bpm.client.exception.BadRequestException;
+import org.camunda.bpm.client.exception.UnknownHttpErrorException;
+import org.camunda.bpm.client.task.ExternalTask;
+import org.camunda.bpm.client.task.ExternalTaskService;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OAuth2ExternalTaskServiceTest {
+
+    private final ExternalTaskService delegate = mock(ExternalTaskService.class);
+    private final OAuth2RequestInterceptor interceptor = mock(OAuth2RequestInterceptor.class);
+    private final ExternalTask externalTask = mock(ExternalTask.class);
+    private final OAuth2ExternalTaskService externalTaskService = new OAuth2ExternalTaskService(delegate, interceptor);
+    private final AccessToken accessToken = new AccessToken("token", Long.MAX_VALUE);
+
+    @Test
+    public void thatRejectedRequestsAreReplayedOnceWithANewToken() {
+        when(interceptor.invalidateSentAccessToken()).thenReturn(accessToken);
+        doThrow(OAuth2BackoffStrategyTest.unauthorized()).doNothing().when(delegate).complete(externalTask);
+
+        externalTaskService.complete(externalTask);
+
+        verify(interceptor).invalidateSentAccessToken();
+        verify(delegate, times(2)).complete(externalTask);
+    }
+
+    @Test
+    public void thatRepeatedRejectionsAreThrown() {
+        when(interceptor.invalidateSentAccessToken()).thenReturn(accessToken);
+        UnknownHttpErrorException unauthorized = OAuth2BackoffStrategyTest.unauthorized();
+        doThrow(unauthorized).when(delegate).extendLock(externalTask, 1_000);
+
+        assertSame(unauthorized, assertThrows(UnknownHttpErrorException.class,
+                () -> externalTaskService.extendLock(externalTask, 1_000)));
+        verify(interceptor, times(1)).invalidateSentAccessToken();
+    }
+
+    @Test
+    public void thatOtherErrorsAreThrownWithoutReplay() {
+        when(interceptor.invalidateSentAccessToken()).thenReturn(accessToken);
+        BadRequestException badRequest = new BadRequestException("bad request", null);
+        doThrow(badRequest).when(delegate).handleBpmnError(externalTask, "error");
+
+        assertSame(badRequest, assertThrows(BadRequestException.class,
+                () -> externalTaskService.handleBpmnError(externalTask, "error")));
+        verify(interceptor, never()).invalidateSentAccessToken();
+        verify(delegate, times(1)).handleBpmnError(externalTask, "error");
+    }
+}
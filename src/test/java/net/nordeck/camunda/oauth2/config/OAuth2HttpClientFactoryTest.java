@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OAuth2HttpClientFactoryTest {
+
+    @Test
+    public void thatHttpPropertiesAreApplied() {
+        OkHttpClient httpClient = OAuth2HttpClientFactory.newBuilder(new OAuth2ConfigProperties.Http(Duration.ofSeconds(1),
+                Duration.ofSeconds(2), Duration.ofSeconds(3), 1, Duration.ofMinutes(1), false, 16, Duration.ofHours(1), false))
+                .build();
+
+        assertEquals(1000, httpClient.connectTimeoutMillis());
+        assertEquals(2000, httpClient.readTimeoutMillis());
+        assertEquals(3000, httpClient.callTimeoutMillis());
+        assertEquals(List.of(Protocol.HTTP_1_1), httpClient.protocols());
+    }
+
+    @Test
+    public void thatHttp2IsPreferredByDefault() {
+        OkHttpClient httpClient = OAuth2HttpClientFactory.newBuilder(properties().getHttp()).build();
+
+        assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1), httpClient.protocols());
+        assertEquals(10_000, httpClient.connectTimeoutMillis());
+    }
+
+    @Test
+    public void thatTokenHttpClientDoesNotCollideWithOtherHttpClients() throws IOException {
+        try (MockWebServer mockWebServer = new MockWebServer()) {
+            OkHttpClient applicationHttpClient = new OkHttpClient();
+            contextRunner(mockWebServer)
+                    .withBean("applicationHttpClient", OkHttpClient.class, () -> applicationHttpClient)
+                    .run(context -> {
+                        assertThat(context).hasBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME);
+                        assertNotSame(applicationHttpClient, context.getBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME));
+                    });
+        }
+    }
+
+    @Test
+    public void thatTokenHttpClientCanBeReplaced() throws IOException {
+        try (MockWebServer mockWebServer = new MockWebServer()) {
+            OkHttpClient tokenHttpClient = new OkHttpClient();
+            contextRunner(mockWebServer)
+                    .withBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME, OkHttpClient.class, () -> tokenHttpClient)
+                    .run(context -> assertSame(tokenHttpClient, context.getBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME)));
+        }
+    }
+
+    @Test
+    public void thatTheClientCertificateIsLoadedForTlsClientAuthentication(@TempDir Path directory) throws Exception {
+        Path keyStore = directory.resolve("client.p12");
+        KeyStore emptyKeyStore = KeyStore.getInstance("PKCS12");
+        emptyKeyStore.load(null, null);
+        try (OutputStream outputStream = Files.newOutputStream(keyStore)) {
+            emptyKeyStore.store(outputStream, "changeit".toCharArray());
+        }
+
+        try (MockWebServer mockWebServer = new MockWebServer()) {
+            new ApplicationContextRunner()
+                    .withClassLoader(new FilteredClassLoader("org.zalando.logbook.okhttp"))
+                    .withConfiguration(AutoConfigurations.of(OAuth2ClientAutoconfiguration.class, DefaultOkHttpAutoconfiguration.class))
+                    .withPropertyValues(
+                            "oauth2.issuer-uri=" + mockWebServer.url("/issuer-uri"),
+                            "oauth2.token-uri=" + mockWebServer.url("/token-uri"),
+                            "oauth2.client-id=some_client_id",
+                            "oauth2.scope=some_scope",
+                            "oauth2.startup=lazy",
+                            "oauth2.client-authentication.method=tls_client_auth",
+                            "oauth2.client-authentication.key-store=" + keyStore,
+                            "oauth2.client-authentication.key-store-password=changeit")
+                    .run(context -> {
+                        assertThat(context).hasNotFailed();
+                        OkHttpClient httpClient = context.getBean(OAuth2ClientAutoconfiguration.HTTP_CLIENT_BEAN_NAME, OkHttpClient.class);
+                        assertNotSame(new OkHttpClient().sslSocketFactory(), httpClient.sslSocketFactory());
+                    });
+        }
+    }
+
+    @Test
+    public void thatMissingKeyStoresAreReported(@TempDir Path directory) {
+        OAuth2ConfigProperties.ClientAuthentication clientAuthentication = new OAuth2ConfigProperties.ClientAuthentication(
+                OAuth2ConfigProperties.ClientAuthentication.Method.TLS_CLIENT_AUTH, null, null, "RS256", null,
+                Duration.ofMinutes(5), true, directory.resolve("missing.p12").toString(), "changeit", "PKCS12");
+
+        OAuth2RuntimeException exception = assertThrows(OAuth2RuntimeException.class,
+                () -> OAuth2HttpClientFactory.newBuilder(properties().getHttp(), clientAuthentication));
+        assertThat(exception.getMessage()).contains("missing.p12");
+    }
+
+    private static ApplicationContextRunner contextRunner(MockWebServer mockWebServer) {
+        return new ApplicationContextRunner()
+                .withClassLoader(new FilteredClassLoader("org.zalando.logbook.okhttp"))
+                .withConfiguration(AutoConfigurations.of(OAuth2ClientAutoconfiguration.class, DefaultOkHttpAutoconfiguration.class))
+                .withPropertyValues(
+                        "oauth2.issuer-uri=" + mockWebServer.url("/issuer-uri"),
+                        "oauth2.token-uri=" + mockWebServer.url("/token-uri"),
+                        "oauth2.client-id=some_client_id",
+                        "oauth2.client-secret=some_client_secret",
+                        "oauth2.scope=some_scope",
+                        "oauth2.startup=lazy");
+    }
+
+    private static OAuth2ConfigProperties properties() {
+        return new OAuth2ConfigProperties("http://localhost/issuer-uri", "http://localhost/token-uri",
+                "some_client_id", "some_client_secret", "some_scope");
+    }
+
+}
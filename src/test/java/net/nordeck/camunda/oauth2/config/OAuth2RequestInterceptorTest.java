@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import org.camunda.bpm.client.interceptor.ClientRequestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.lang.management.ManagementFactory;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class OAuth2RequestInterceptorTest {
+
+    private static final int ITERATIONS = 100_000;
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private final long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatTheHeaderIsBuiltOncePerToken() throws Exception {
+        HeaderCapturingContext context = new HeaderCapturingContext();
+        OAuth2RequestInterceptor interceptor = new OAuth2RequestInterceptor(createClient());
+
+        interceptor.intercept(context);
+        String first = context.value;
+        interceptor.intercept(context);
+
+        assertEquals("Bearer " + "x".repeat(2048), first);
+        assertThat(context.value).isSameAs(first);
+    }
+
+    @Test
+    public void thatInterceptingDoesNotAllocateWhileTheTokenIsValid() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+        HeaderCapturingContext context = new HeaderCapturingContext();
+        OAuth2RequestInterceptor interceptor = new OAuth2RequestInterceptor(createClient());
+
+        // warm up, so the measured calls run compiled code
+        for (int i = 0; i < ITERATIONS; i++) {
+            interceptor.intercept(context);
+        }
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            interceptor.intercept(context);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // building the header per call would allocate more than 4 KB per call
+        assertThat(allocated).isLessThan(ITERATIONS);
+    }
+
+    @Test
+    public void thatOnlyTheTokenSentByTheCurrentThreadIsInvalidated() throws Exception {
+        HeaderCapturingContext context = new HeaderCapturingContext();
+        OAuth2RequestInterceptor interceptor = new OAuth2RequestInterceptor(createClient());
+        tokenEndpoint.enqueue(tokens("y"));
+        interceptor.intercept(context);
+
+        // another thread sends the same token, which is rejected before the request of this thread
+        Thread other = new Thread(() -> {
+            interceptor.intercept(new HeaderCapturingContext());
+            interceptor.invalidateSentAccessToken();
+            interceptor.intercept(new HeaderCapturingContext());
+        });
+        other.start();
+        other.join();
+
+        assertEquals("y", interceptor.invalidateSentAccessToken().token());
+        assertEquals(2, tokenEndpoint.getRequestCount());
+    }
+
+    private OAuth2Client createClient() {
+        tokenEndpoint.enqueue(tokens("x".repeat(2048)));
+        return tokenEndpoint.clientBuilder(clock).build();
+    }
+
+    private static class HeaderCapturingContext implements ClientRequestContext {
+
+        private String value;
+
+        @Override
+        public void addHeader(String name, String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.dto.RefreshToken;
+import net.nordeck.camunda.oauth2.time.Clock;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenValidatorTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final Clock clock = () -> NOW;
+
+    private final TokenValidator tokenValidator = new TokenValidator(clock);
+
+    @Test
+    public void thatValidTokenIsNotExpired() {
+        assertFalse(tokenValidator.isExpired(new AccessToken("not-a-jwt", NOW + 1000)));
+    }
+
+    @Test
+    public void thatTokenIsExpiredAfterExpiry() {
+        assertTrue(tokenValidator.isExpired(new AccessToken("not-a-jwt", NOW - 1)));
+    }
+
+    /**
+     * The token is not a JWT, so any attempt to decode it on the hot path would fail.
+     */
+    @Test
+    public void thatTokenIsNotDecodedWhenValidating() {
+        AccessToken accessToken = new AccessToken("not-a-jwt", NOW + 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(tokenValidator.isExpired(accessToken));
+        }
+    }
+
+    @Test
+    public void thatRefreshTokenIsExpiredAfterExpiry() {
+        assertFalse(tokenValidator.isRefreshTokenExpired(new RefreshToken("not-a-jwt", Long.MAX_VALUE)));
+        assertTrue(tokenValidator.isRefreshTokenExpired(new RefreshToken("not-a-jwt", NOW - 1)));
+    }
+}
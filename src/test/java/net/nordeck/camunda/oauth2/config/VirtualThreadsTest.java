@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.config;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.exception.OAuth2RuntimeException;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VirtualThreadsTest {
+
+    private static final int HANDLERS = 2_000;
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private final long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @BeforeAll
+    public static void tracePinnedThreads() {
+        // read once, when the first virtual thread is created
+        System.setProperty("jdk.tracePinnedThreads", "full");
+    }
+
+    static boolean hasVirtualThreads() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    @Test
+    @DisabledIf("hasVirtualThreads")
+    public void thatVirtualThreadsRequireJava21() {
+        OAuth2RuntimeException exception = assertThrows(OAuth2RuntimeException.class,
+                () -> OAuth2HttpClientFactory.newBuilder(http(true)));
+
+        assertThat(exception.getMessage()).contains("Java 21");
+    }
+
+    @Test
+    @EnabledIf("hasVirtualThreads")
+    public void thatVirtualThreadHandlersShareOneRefreshWithoutPinning() throws Exception {
+        PrintStream out = System.out;
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        try {
+            tokenEndpoint.enqueue(tokens("token-1").setBodyDelay(200, TimeUnit.MILLISECONDS));
+            OkHttpClient httpClient = OAuth2HttpClientFactory.newBuilder(http(true)).build();
+            OAuth2Client oAuth2Client = OAuth2Client.builder(tokenEndpoint.tokenRequestFactory(), httpClient)
+                    .clock(clock)
+                    .startupMode(StartupMode.LAZY)
+                    .build();
+            ExecutorService handlers = OAuth2HttpClientFactory.newVirtualThreadPerTaskExecutor();
+
+            System.setOut(new PrintStream(trace, true, StandardCharsets.UTF_8));
+            List<Future<String>> accessTokens = new ArrayList<>();
+            for (int i = 0; i < HANDLERS; i++) {
+                accessTokens.add(handlers.submit(() -> oAuth2Client.getAccessToken().token()));
+            }
+            for (Future<String> accessToken : accessTokens) {
+                assertEquals("token-1", accessToken.get(10, TimeUnit.SECONDS));
+            }
+            handlers.shutdown();
+            httpClient.dispatcher().executorService().shutdown();
+
+            assertEquals(1, tokenEndpoint.getRequestCount());
+        } finally {
+            System.setOut(out);
+        }
+        // pinned virtual threads are traced with the monitors they hold
+        assertThat(trace.toString(StandardCharsets.UTF_8)).doesNotContain("<== monitors");
+    }
+
+    private static OAuth2ConfigProperties.Http http(boolean virtualThreads) {
+        return new OAuth2ConfigProperties.Http(Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofSeconds(30), 5,
+                Duration.ofMinutes(10), false, null, null, virtualThreads);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.dto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RedactionTest {
+
+    private static final String TOKEN = "eyJhbGciOiJSUzI1NiJ9.secret-payload.signature";
+
+    @Test
+    public void thatLongTokensKeepTheirPrefixAndLength() {
+        assertEquals("eyJh...(45 chars)", Redaction.redact(TOKEN));
+    }
+
+    @Test
+    public void thatShortTokensOnlyKeepTheirLength() {
+        assertEquals("...(6 chars)", Redaction.redact("secret"));
+        assertEquals("null", Redaction.redact(null));
+    }
+
+    @Test
+    public void thatTokensAreNotPrinted() {
+        assertThat(new AccessToken(TOKEN, 1_000).toString())
+                .isEqualTo("AccessToken[token=eyJh...(45 chars), expiresAt=1000]");
+        assertThat(new RefreshToken(TOKEN, 2_000).toString()).doesNotContain("secret-payload");
+        assertThat(new TokenResponse(TOKEN, TOKEN, 300L, 1800L, "Bearer").toString()).doesNotContain("secret-payload");
+        assertThat(new TokenPair(new AccessToken(TOKEN, 1_000), new RefreshToken(TOKEN, 2_000)).toString())
+                .doesNotContain("secret-payload");
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.health;
+
+import net.nordeck.camunda.oauth2.CircuitBreaker;
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.OAuth2ClientRegistry;
+import net.nordeck.camunda.oauth2.config.OAuth2ConfigProperties;
+import net.nordeck.camunda.oauth2.config.StartupMode;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import okhttp3.mockwebserver.MockResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OAuth2HealthIndicatorTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatValidTokensAreReported() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        OAuth2HealthIndicator healthIndicator = healthIndicator(createClient(StartupMode.EAGER));
+
+        now += 10_000;
+        Health health = healthIndicator.health();
+
+        assertEquals(Status.UP, health.getStatus());
+        Map<?, ?> details = (Map<?, ?>) health.getDetails().get(OAuth2HealthIndicator.DEFAULT_CLIENT);
+        assertEquals(true, details.get("valid"));
+        assertEquals(CircuitBreaker.State.CLOSED, details.get("circuitBreaker"));
+        assertEquals(10_000L, details.get("tokenAgeMillis"));
+        assertEquals(50_000L, details.get("expiresInMillis"));
+        assertEquals(Long.class, details.get("lastRefreshLatencyMillis").getClass());
+    }
+
+    @Test
+    public void thatMissingAndExpiredTokensAreUpAndReportedWithoutFetchingTokens() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        OAuth2Client lazyClient = createClient(StartupMode.LAZY);
+        OAuth2HealthIndicator healthIndicator = healthIndicator(lazyClient);
+
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+        assertEquals(Map.of("valid", false, "circuitBreaker", CircuitBreaker.State.CLOSED),
+                healthIndicator.health().getDetails().get(OAuth2HealthIndicator.DEFAULT_CLIENT));
+
+        lazyClient.getAccessToken();
+        now += 61_000;
+        Health health = healthIndicator.health();
+
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(false, ((Map<?, ?>) health.getDetails().get(OAuth2HealthIndicator.DEFAULT_CLIENT)).get("valid"));
+        assertEquals(1, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatFailingToObtainTokensIsDown() throws Exception {
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(400));
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        OAuth2Client lazyClient = createClient(StartupMode.LAZY);
+        OAuth2HealthIndicator healthIndicator = healthIndicator(lazyClient);
+
+        lazyClient.getAccessTokenAsync().exceptionally(e -> null).join();
+        Health health = healthIndicator.health();
+
+        assertEquals(Status.DOWN, health.getStatus());
+        Map<?, ?> details = (Map<?, ?>) health.getDetails().get(OAuth2HealthIndicator.DEFAULT_CLIENT);
+        assertThat((String) details.get("lastFailure")).isNotBlank();
+
+        lazyClient.getAccessToken();
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+    }
+
+    @Test
+    public void thatAnOpenCircuitBreakerIsDown() throws Exception {
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(503));
+        OAuth2Client lazyClient = tokenEndpoint.clientBuilder(clock)
+                .startupMode(StartupMode.LAZY)
+                .circuitBreaker(new CircuitBreaker(new OAuth2ConfigProperties.CircuitBreaker(true, 1, Duration.ofSeconds(30)), clock))
+                .build();
+        OAuth2HealthIndicator healthIndicator = healthIndicator(lazyClient);
+
+        lazyClient.getAccessTokenAsync().exceptionally(e -> null).join();
+        Health health = healthIndicator.health();
+
+        assertEquals(Status.DOWN, health.getStatus());
+        Map<?, ?> details = (Map<?, ?>) health.getDetails().get(OAuth2HealthIndicator.DEFAULT_CLIENT);
+        assertEquals(CircuitBreaker.State.OPEN, details.get("circuitBreaker"));
+    }
+
+    @Test
+    public void thatRegistrationsAreReported() throws Exception {
+        tokenEndpoint.enqueue(tokens("opaque-1"));
+        OAuth2Client defaultClient = createClient(StartupMode.EAGER);
+        OAuth2ClientRegistry registry = new OAuth2ClientRegistry(defaultClient,
+                Map.of("engine-a", createClient(StartupMode.LAZY)), Map.of("engine-a", "http://engine-a"));
+
+        Health health = new OAuth2HealthIndicator(registry, clock).health();
+
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals(Map.of("valid", false, "circuitBreaker", CircuitBreaker.State.CLOSED), health.getDetails().get("engine-a"));
+    }
+
+    private OAuth2HealthIndicator healthIndicator(OAuth2Client oAuth2Client) {
+        return new OAuth2HealthIndicator(new OAuth2ClientRegistry(oAuth2Client, Map.of(), Map.of()), clock);
+    }
+
+    private OAuth2Client createClient(StartupMode startupMode) {
+        return tokenEndpoint.clientBuilder(clock)
+                .startupMode(startupMode)
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.config.OAuth2RequestInterceptor;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import net.nordeck.camunda.test.TokenResponse;
+import okhttp3.mockwebserver.MockResponse;
+import org.camunda.bpm.client.interceptor.ClientRequestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static net.nordeck.camunda.oauth2.metrics.MicrometerOAuth2ClientMetrics.CLIENT_TAG;
+import static net.nordeck.camunda.oauth2.metrics.MicrometerOAuth2ClientMetrics.INTERCEPTOR_OVERHEAD;
+import static net.nordeck.camunda.oauth2.metrics.MicrometerOAuth2ClientMetrics.TOKEN_EXPIRY;
+import static net.nordeck.camunda.oauth2.metrics.MicrometerOAuth2ClientMetrics.TOKEN_LOOKUPS;
+import static net.nordeck.camunda.oauth2.metrics.MicrometerOAuth2ClientMetrics.TOKEN_REQUESTS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class MicrometerOAuth2ClientMetricsTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatTokenLookupsAndRequestsAreRecorded() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 60L, 120L));
+        OAuth2Client oAuth2Client = createClient();
+
+        oAuth2Client.getAccessToken();
+        oAuth2Client.getAccessToken();
+        now += 61_000;
+        oAuth2Client.getAccessToken();
+
+        assertEquals(2, meterRegistry.get(TOKEN_LOOKUPS).tag("source", "cached").counter().count());
+        assertEquals(1, meterRegistry.get(TOKEN_LOOKUPS).tag("source", "fetched").counter().count());
+        assertEquals(1, meterRegistry.get(TOKEN_REQUESTS)
+                .tag("grant_type", "client_credentials").tag("outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get(TOKEN_REQUESTS)
+                .tag("grant_type", "refresh_token").tag("outcome", "success").timer().count());
+        assertEquals(60, meterRegistry.get(TOKEN_EXPIRY).gauge().value());
+    }
+
+    @Test
+    public void thatFailedTokenRequestsAreRecorded() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new MockResponse().setResponseCode(503));
+        OAuth2Client oAuth2Client = createClient();
+
+        now += 61_000;
+        oAuth2Client.getAccessTokenAsync().exceptionally(e -> null).join();
+
+        assertEquals(1, meterRegistry.get(TOKEN_REQUESTS)
+                .tag("grant_type", "refresh_token").tag("outcome", "error").timer().count());
+        assertEquals(-1, meterRegistry.get(TOKEN_EXPIRY).gauge().value());
+    }
+
+    @Test
+    public void thatInterceptorOverheadIsRecorded() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        OAuth2RequestInterceptor interceptor = new OAuth2RequestInterceptor(createClient());
+
+        interceptor.intercept(mock(ClientRequestContext.class));
+        interceptor.intercept(mock(ClientRequestContext.class));
+
+        assertEquals(2, meterRegistry.get(INTERCEPTOR_OVERHEAD).timer().count());
+    }
+
+    @Test
+    public void thatTheMetricsOfTheClientsAreToldApart() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 120L, 240L));
+        OAuth2Client defaultClient = createClient();
+        OAuth2Client engineA = tokenEndpoint.clientBuilder(clock)
+                .metrics(new MicrometerOAuth2ClientMetrics(meterRegistry, clock, "engine-a"))
+                .build();
+
+        defaultClient.getAccessToken();
+        engineA.getAccessToken();
+
+        assertEquals(60, meterRegistry.get(TOKEN_EXPIRY).tag(CLIENT_TAG, "default").gauge().value());
+        assertEquals(120, meterRegistry.get(TOKEN_EXPIRY).tag(CLIENT_TAG, "engine-a").gauge().value());
+        assertEquals(1, meterRegistry.get(TOKEN_LOOKUPS).tag(CLIENT_TAG, "engine-a").tag("source", "cached").counter().count());
+        assertEquals(1, meterRegistry.get(TOKEN_REQUESTS).tag(CLIENT_TAG, "engine-a").timer().count());
+    }
+
+    @Test
+    public void thatExpiryIsUnknownBeforeTheFirstFetch() {
+        metrics();
+
+        assertEquals(Double.NaN, meterRegistry.get(TOKEN_EXPIRY).gauge().value());
+    }
+
+    private MicrometerOAuth2ClientMetrics metrics() {
+        return new MicrometerOAuth2ClientMetrics(meterRegistry, clock);
+    }
+
+    private OAuth2Client createClient() {
+        return tokenEndpoint.clientBuilder(clock)
+                .metrics(metrics())
+                .build();
+    }
+
+}
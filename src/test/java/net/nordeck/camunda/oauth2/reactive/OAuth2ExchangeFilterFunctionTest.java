@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.reactive;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.config.OAuth2RequestInterceptor;
+import net.nordeck.camunda.oauth2.config.StartupMode;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import org.camunda.bpm.client.interceptor.ClientRequestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static net.nordeck.camunda.test.TokenEndpoint.tokens;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class OAuth2ExchangeFilterFunctionTest {
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private final long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatTheAuthorizationHeaderIsSet() throws Exception {
+        tokenEndpoint.enqueue(tokens("token-1"));
+        OAuth2ExchangeFilterFunction filter = new OAuth2ExchangeFilterFunction(new ReactiveOAuth2TokenSource(createClient()));
+        AtomicReference<ClientRequest> sent = new AtomicReference<>();
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/engine-rest/external-task"))
+                .header(HttpHeaders.AUTHORIZATION, "Basic stale")
+                .build();
+
+        ClientResponse response = filter.filter(request, sending -> {
+            sent.set(sending);
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        }).block();
+
+        assertEquals(HttpStatus.OK, response.statusCode());
+        assertEquals(List.of("Bearer token-1"), sent.get().headers().get(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    public void thatTokensAreOnlyFetchedOnSubscription() throws Exception {
+        tokenEndpoint.enqueue(tokens("token-1"));
+        ReactiveOAuth2TokenSource tokenSource = new ReactiveOAuth2TokenSource(createClient());
+
+        Mono<AccessToken> accessToken = tokenSource.getAccessToken();
+        assertEquals(0, tokenEndpoint.getRequestCount());
+
+        assertEquals("token-1", accessToken.block().token());
+        assertEquals(1, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatConcurrentSubscribersShareOneFetchWithTheInterceptor() throws Exception {
+        tokenEndpoint.enqueue(tokens("token-1").setBodyDelay(200, TimeUnit.MILLISECONDS));
+        OAuth2Client oAuth2Client = createClient();
+        ReactiveOAuth2TokenSource tokenSource = new ReactiveOAuth2TokenSource(oAuth2Client);
+
+        List<CompletableFuture<AccessToken>> accessTokens = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            accessTokens.add(tokenSource.getAccessToken().toFuture());
+        }
+        ClientRequestContext context = mock(ClientRequestContext.class);
+        new OAuth2RequestInterceptor(oAuth2Client).intercept(context);
+
+        accessTokens.forEach(accessToken -> assertEquals("token-1", accessToken.join().token()));
+        verify(context).addHeader(eq("Authorization"), anyString());
+        assertEquals(1, tokenEndpoint.getRequestCount());
+    }
+
+    private OAuth2Client createClient() {
+        return tokenEndpoint.clientBuilder(clock)
+                .startupMode(StartupMode.LAZY)
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.dto.RefreshToken;
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+import net.nordeck.camunda.oauth2.time.Clock;
+import net.nordeck.camunda.test.TokenEndpoint;
+import net.nordeck.camunda.test.TokenResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class FileTokenStoreTest {
+
+    private static final TokenPair TOKENS = new TokenPair(new AccessToken("access-1", 1_000), new RefreshToken("refresh-1", 2_000));
+
+    @TempDir
+    Path directory;
+
+    @RegisterExtension
+    final TokenEndpoint tokenEndpoint = new TokenEndpoint();
+
+    private final long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @Test
+    public void thatStoredTokensSurviveRestarts() {
+        new FileTokenStore(directory, "key").getOrFetch(tokens -> true, stored -> CompletableFuture.completedFuture(TOKENS)).join();
+
+        TokenPair tokens = new FileTokenStore(directory, "key")
+                .getOrFetch(stored -> true, stored -> CompletableFuture.failedFuture(new AssertionError("fetched"))).join();
+
+        assertEquals(TOKENS, tokens);
+    }
+
+    @Test
+    public void thatUnusableTokensAreHandedToTheFetch() {
+        FileTokenStore store = new FileTokenStore(directory, "key");
+        store.write(TOKENS);
+        TokenPair refreshed = new TokenPair(new AccessToken("access-2", 3_000), new RefreshToken(null, Long.MAX_VALUE));
+        AtomicReference<TokenPair> handed = new AtomicReference<>();
+
+        TokenPair tokens = store.getOrFetch(stored -> false, stored -> {
+            handed.set(stored);
+            return CompletableFuture.completedFuture(refreshed);
+        }).join();
+
+        assertEquals(TOKENS, handed.get());
+        assertEquals(refreshed, tokens);
+        assertEquals(refreshed, store.read());
+    }
+
+    @Test
+    public void thatKeysDoNotShareTokens() {
+        new FileTokenStore(directory, "key").write(TOKENS);
+
+        assertNull(new FileTokenStore(directory, "other key").read());
+    }
+
+    @Test
+    public void thatUnreadableTokensAreFetchedAgain() throws IOException {
+        FileTokenStore store = new FileTokenStore(directory, "key");
+        store.write(TOKENS);
+        try (var files = Files.list(directory)) {
+            Path tokenFile = files.filter(file -> file.toString().endsWith(".tokens")).findFirst().orElseThrow();
+            Files.writeString(tokenFile, "access_token=access-1\naccess_token_expires_at=garbage");
+        }
+
+        assertNull(store.read());
+    }
+
+    @Test
+    public void thatTokensAreOnlyReadableByTheOwner() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        new FileTokenStore(directory, "key").write(TOKENS);
+
+        try (var files = Files.list(directory)) {
+            Path tokenFile = files.filter(file -> file.toString().endsWith(".tokens")).findFirst().orElseThrow();
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+        }
+    }
+
+    @Test
+    public void thatClientsShareStoredTokens() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+
+        OAuth2Client first = createClient();
+        OAuth2Client second = createClient();
+
+        assertEquals("opaque-1", first.getAccessToken().token());
+        assertEquals("opaque-1", second.getAccessToken().token());
+        assertEquals(1, tokenEndpoint.getRequestCount());
+    }
+
+    @Test
+    public void thatTokensReplacedByAnotherClientAreUsedForRefreshing() throws Exception {
+        tokenEndpoint.enqueue(new TokenResponse("opaque-1", "refresh-1", 60L, 120L));
+        tokenEndpoint.enqueue(new TokenResponse("opaque-2", "refresh-2", 60L, 120L));
+        OAuth2Client first = createClient();
+        OAuth2Client second = createClient();
+
+        AccessToken refreshed = first.refresh(first.getAccessToken());
+        AccessToken replaced = second.refresh(second.getAccessToken());
+
+        assertEquals("opaque-2", refreshed.token());
+        assertEquals("opaque-2", replaced.token());
+        assertEquals(2, tokenEndpoint.getRequestCount());
+        tokenEndpoint.takeRequestBody();
+        assertThat(tokenEndpoint.takeRequestBody()).contains("refresh_token=refresh-1");
+    }
+
+    private OAuth2Client createClient() {
+        return tokenEndpoint.clientBuilder(clock)
+                .tokenStore(new FileTokenStore(directory, tokenEndpoint.tokenUri() + " client scope"))
+                .build();
+    }
+}
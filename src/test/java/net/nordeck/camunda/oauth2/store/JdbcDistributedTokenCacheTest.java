@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.oauth2.store;
+
+import net.nordeck.camunda.oauth2.dto.AccessToken;
+import net.nordeck.camunda.oauth2.dto.RefreshToken;
+import net.nordeck.camunda.oauth2.dto.TokenPair;
+import net.nordeck.camunda.oauth2.time.Clock;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JdbcDistributedTokenCacheTest {
+
+    private static final Duration LEASE = Duration.ofSeconds(30);
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(5);
+    private static final TokenPair TOKENS = new TokenPair(new AccessToken("access-1", 1_000), new RefreshToken("refresh-1", 2_000));
+
+    private JdbcDataSource dataSource;
+    private JdbcDistributedTokenCache cache;
+    private long now = System.currentTimeMillis();
+    private final Clock clock = () -> now;
+
+    @BeforeEach
+    public void createTable() throws SQLException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:tokens;DB_CLOSE_DELAY=-1");
+        execute("""
+                CREATE TABLE oauth2_token_cache (
+                    cache_key                VARCHAR(64) PRIMARY KEY,
+                    access_token             VARCHAR(8000),
+                    access_token_expires_at  BIGINT,
+                    refresh_token            VARCHAR(8000),
+                    refresh_token_expires_at BIGINT,
+                    lease_owner              VARCHAR(64),
+                    lease_expires_at         BIGINT
+                )""");
+        cache = new JdbcDistributedTokenCache(dataSource, "oauth2_token_cache", clock, CLOCK_SKEW);
+    }
+
+    @AfterEach
+    public void dropTable() throws SQLException {
+        execute("DROP TABLE oauth2_token_cache");
+    }
+
+    @Test
+    public void thatOnlyOneNodeHoldsTheLease() {
+        assertTrue(cache.tryAcquireLease("key", "node-1", LEASE));
+        assertFalse(cache.tryAcquireLease("key", "node-2", LEASE));
+        assertTrue(cache.tryAcquireLease("other key", "node-2", LEASE));
+
+        cache.releaseLease("key", "node-2");
+        assertFalse(cache.tryAcquireLease("key", "node-2", LEASE));
+        cache.releaseLease("key", "node-1");
+        assertTrue(cache.tryAcquireLease("key", "node-2", LEASE));
+    }
+
+    @Test
+    public void thatExpiredLeasesAreTakenOver() {
+        assertTrue(cache.tryAcquireLease("key", "node-1", LEASE));
+
+        now += LEASE.toMillis() + 1;
+        // node-2 may be ahead of node-1 by up to the clock skew
+        assertFalse(cache.tryAcquireLease("key", "node-2", LEASE));
+
+        now += CLOCK_SKEW.toMillis();
+
+        assertTrue(cache.tryAcquireLease("key", "node-2", LEASE));
+        assertFalse(cache.tryAcquireLease("key", "node-1", LEASE));
+    }
+
+    @Test
+    public void thatPutCachesTheTokensAndReleasesTheLease() {
+        assertNull(cache.get("key"));
+        cache.tryAcquireLease("key", "node-1", LEASE);
+
+        assertTrue(cache.put("key", "node-1", TOKENS));
+
+        assertEquals(TOKENS, cache.get("key"));
+        assertTrue(cache.tryAcquireLease("key", "node-2", LEASE));
+    }
+
+    @Test
+    public void thatANodeWhichLostTheLeaseDoesNotOverwriteTheTokens() {
+        TokenPair successorTokens = new TokenPair(new AccessToken("access-2", 1_000), new RefreshToken("refresh-2", 2_000));
+        cache.tryAcquireLease("key", "node-1", LEASE);
+        now += LEASE.plus(CLOCK_SKEW).toMillis() + 1;
+        cache.tryAcquireLease("key", "node-2", LEASE);
+        assertTrue(cache.put("key", "node-2", successorTokens));
+
+        assertFalse(cache.put("key", "node-1", TOKENS));
+
+        assertEquals(successorTokens, cache.get("key"));
+    }
+
+    @Test
+    public void thatTheCacheIsNotCalledOnTheCallingThread() {
+        List<Runnable> tasks = new ArrayList<>();
+        DistributedTokenStore store = new DistributedTokenStore(cache, "key", LEASE, Duration.ofMillis(10), tasks::add);
+
+        CompletableFuture<TokenPair> result = store.getOrFetch(tokens -> true, stored -> CompletableFuture.completedFuture(TOKENS));
+
+        assertFalse(result.isDone());
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertFalse(result.isDone());
+        tasks.remove(0).run();
+        assertEquals(TOKENS, result.join());
+        assertEquals(TOKENS, cache.get(Keys.hash("key")));
+    }
+
+    @Test
+    public void thatOnlyOneNodeFetches() {
+        AtomicInteger fetches = new AtomicInteger();
+        List<CompletableFuture<TokenPair>> results = new ArrayList<>();
+        for (int node = 0; node < 10; node++) {
+            DistributedTokenStore store = new DistributedTokenStore(cache, "key", LEASE, Duration.ofMillis(10));
+            results.add(store.getOrFetch(tokens -> true, stored -> {
+                fetches.incrementAndGet();
+                return CompletableFuture.supplyAsync(() -> TOKENS,
+                        CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+            }));
+        }
+
+        results.forEach(result -> assertEquals(TOKENS, result.join()));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void thatTheNextNodeFetchesAfterAFailure() {
+        DistributedTokenStore failing = new DistributedTokenStore(cache, "key", LEASE, Duration.ofMillis(10));
+        DistributedTokenStore succeeding = new DistributedTokenStore(cache, "key", LEASE, Duration.ofMillis(10));
+
+        CompletableFuture<TokenPair> failed = failing.getOrFetch(tokens -> true,
+                stored -> CompletableFuture.failedFuture(new IllegalStateException("unavailable")));
+        assertThrows(CompletionException.class, failed::join);
+        TokenPair tokens = succeeding.getOrFetch(stored -> true, stored -> CompletableFuture.completedFuture(TOKENS)).join();
+
+        assertEquals(TOKENS, tokens);
+    }
+
+    @Test
+    public void thatNodesFetchWithoutTheCacheIfItIsUnavailable() throws SQLException {
+        execute("DROP TABLE oauth2_token_cache");
+        execute("CREATE TABLE oauth2_token_cache (cache_key VARCHAR(64))");
+        DistributedTokenStore store = new DistributedTokenStore(cache, "key", LEASE, Duration.ofMillis(10));
+
+        assertEquals(TOKENS, store.getOrFetch(tokens -> true, stored -> CompletableFuture.completedFuture(TOKENS)).join());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -33,16 +33,29 @@ public final class JWTCreator {
     }
 
     public static String create() {
+        return create(now().plus(5L, ChronoUnit.MINUTES));
+    }
+
+    public static String create(Instant expiresAt) {
+        return create(now(), expiresAt);
+    }
+
+    /**
+     * @param issuedAt the iat claim, null to leave it out
+     * @param expiresAt the exp claim
+     */
+    public static String create(Instant issuedAt, Instant expiresAt) {
         try {
-            Instant now = now();
-            return JWT.create()
+            com.auth0.jwt.JWTCreator.Builder builder = JWT.create()
                     .withClaim("name", "Jane Doe")
                     .withClaim("email", "jane@example.com")
                     .withSubject("jane")
                     .withJWTId(UUID.randomUUID().toString())
-                    .withIssuedAt(Date.from(now))
-                    .withExpiresAt(Date.from(now.plus(5L, ChronoUnit.MINUTES)))
-                    .sign(Algorithm.HMAC256("bla"));
+                    .withExpiresAt(Date.from(expiresAt));
+            if (issuedAt != null) {
+                builder.withIssuedAt(Date.from(issuedAt));
+            }
+            return builder.sign(Algorithm.HMAC256("bla"));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2022 Nordeck IT + Consulting GmbH
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and  limitations
+ *  under the License.
+ *
+ */
+package net.nordeck.camunda.test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.nordeck.camunda.oauth2.OAuth2Client;
+import net.nordeck.camunda.oauth2.TokenRequestFactory;
+import net.nordeck.camunda.oauth2.time.Clock;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A MockWebServer standing in for the token endpoint, started before and shut down after each test. Register it with
+ * {@code @RegisterExtension} and build the clients under test with {@link #clientBuilder(Clock)}.
+ */
+public class TokenEndpoint implements BeforeEachCallback, AfterEachCallback {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private MockWebServer server;
+    private OkHttpClient httpClient;
+
+    @Override
+    public void beforeEach(ExtensionContext context) throws IOException {
+        server = new MockWebServer();
+        server.start();
+        httpClient = new OkHttpClient();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) throws IOException {
+        server.shutdown();
+        httpClient.dispatcher().executorService().shutdown();
+    }
+
+    public MockWebServer server() {
+        return server;
+    }
+
+    public OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    public String tokenUri() {
+        return server.url("/token").toString();
+    }
+
+    public TokenRequestFactory tokenRequestFactory() {
+        return new TokenRequestFactory(tokenUri(), "client", "secret", "scope");
+    }
+
+    /**
+     * @param clock the clock of the client and of its token validator
+     * @return a builder of a client fetching its tokens from this endpoint
+     */
+    public OAuth2Client.Builder clientBuilder(Clock clock) {
+        return OAuth2Client.builder(tokenRequestFactory(), httpClient).clock(clock);
+    }
+
+    public void enqueue(TokenResponse tokenResponse) {
+        server.enqueue(tokens(tokenResponse));
+    }
+
+    public void enqueue(MockResponse response) {
+        server.enqueue(response);
+    }
+
+    /**
+     * @return the body of the next token request
+     */
+    public String takeRequestBody() throws InterruptedException {
+        return server.takeRequest().getBody().readUtf8();
+    }
+
+    public int getRequestCount() {
+        return server.getRequestCount();
+    }
+
+    /**
+     * @param accessToken the access token to respond with
+     * @return a token response with an access token expiring in 60 seconds and a refresh token expiring in 30 minutes
+     */
+    public static MockResponse tokens(String accessToken) {
+        return tokens(new TokenResponse(accessToken, "refresh", 60L, 1800L));
+    }
+
+    public static MockResponse tokens(TokenResponse tokenResponse) {
+        try {
+            return new MockResponse()
+                    .setResponseCode(200)
+                    .setBody(OBJECT_MAPPER.writeValueAsString(tokenResponse));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
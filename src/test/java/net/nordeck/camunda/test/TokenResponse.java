@@ -16,5 +16,12 @@
  */
 package net.nordeck.camunda.test;
 
-public record TokenResponse(String access_token, String refresh_token) {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TokenResponse(String access_token, String refresh_token, Long expires_in, Long refresh_expires_in) {
+
+    public TokenResponse(String access_token, String refresh_token) {
+        this(access_token, refresh_token, null, null);
+    }
 }